@@ -10,8 +10,9 @@ import android.widget.BaseAdapter;
 import android.widget.TextView;
 
 import com.hjy.stickyview.IStickyView;
+import com.hjy.stickyview.PlaceholderView;
+import com.hjy.stickyview.StickyCoordinator;
 import com.hjy.stickyview.StickyGridView;
-import com.hjy.stickyview.StickyScrollCallback;
 
 /**
  * Created by hjy on 9/16/15.<br>
@@ -22,7 +23,7 @@ public class GridViewFragment extends Fragment {
 
     private IStickyView mStickyGridView;
 
-    private StickyScrollCallback mStickyScrollCallback;
+    private StickyCoordinator mStickyCoordinator;
 
     @Nullable
     @Override
@@ -35,9 +36,8 @@ public class GridViewFragment extends Fragment {
     private void initViews() {
         mStickyGridView = (StickyGridView) findViewById(R.id.StickyGridView);
 
-        mStickyGridView.setPagePosition(2);
-        mStickyGridView.setStickyScrollCallback(mStickyScrollCallback);
-        mStickyGridView.setupHeadPlaceHolder(new TextView(getActivity()));
+        mStickyCoordinator.registerPage(2, mStickyGridView);
+        mStickyGridView.setupHeadPlaceHolder(new PlaceholderView(getActivity()));
 
         ((StickyGridView)mStickyGridView).setAdapter(new MyListAdapter());
     }
@@ -46,8 +46,14 @@ public class GridViewFragment extends Fragment {
         return mContentView.findViewById(id);
     }
 
-    public void setStickyScrollCallback(StickyScrollCallback stickyScrollCallback) {
-        mStickyScrollCallback = stickyScrollCallback;
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        mStickyCoordinator.unregisterPage(2);
+    }
+
+    public void setStickyCoordinator(StickyCoordinator stickyCoordinator) {
+        mStickyCoordinator = stickyCoordinator;
     }
 
     class MyListAdapter extends BaseAdapter {
@@ -81,15 +87,4 @@ public class GridViewFragment extends Fragment {
         }
     }
 
-    public void adjusScrollPosition(int translationY) {
-        if(mStickyGridView != null)
-            mStickyGridView.adjustPositionByTranslationYOfStickyView(translationY);
-    }
-
-    public int getScrollTop() {
-        if(mStickyGridView != null)
-            return mStickyGridView.getScrollTop();
-        return 0;
-    }
-
 }
\ No newline at end of file
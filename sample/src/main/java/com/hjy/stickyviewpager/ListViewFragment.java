@@ -10,8 +10,9 @@ import android.widget.BaseAdapter;
 import android.widget.TextView;
 
 import com.hjy.stickyview.IStickyView;
+import com.hjy.stickyview.PlaceholderView;
+import com.hjy.stickyview.StickyCoordinator;
 import com.hjy.stickyview.StickyListView;
-import com.hjy.stickyview.StickyScrollCallback;
 
 /**
  * Created by hjy on 9/16/15.<br>
@@ -22,7 +23,7 @@ public class ListViewFragment extends Fragment {
 
     private IStickyView mStickyListView;
 
-    private StickyScrollCallback mStickyScrollCallback;
+    private StickyCoordinator mStickyCoordinator;
 
     @Nullable
     @Override
@@ -35,9 +36,8 @@ public class ListViewFragment extends Fragment {
     private void initViews() {
         mStickyListView = (StickyListView) findViewById(R.id.StickyListView);
 
-        mStickyListView.setPagePosition(1);
-        mStickyListView.setStickyScrollCallback(mStickyScrollCallback);
-        mStickyListView.setupHeadPlaceHolder(new TextView(getActivity()));
+        mStickyCoordinator.registerPage(1, mStickyListView);
+        mStickyListView.setupHeadPlaceHolder(new PlaceholderView(getActivity()));
 
         ((StickyListView)mStickyListView).setAdapter(new MyListAdapter());
     }
@@ -46,8 +46,14 @@ public class ListViewFragment extends Fragment {
         return mContentView.findViewById(id);
     }
 
-    public void setStickyScrollCallback(StickyScrollCallback stickyScrollCallback) {
-        mStickyScrollCallback = stickyScrollCallback;
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        mStickyCoordinator.unregisterPage(1);
+    }
+
+    public void setStickyCoordinator(StickyCoordinator stickyCoordinator) {
+        mStickyCoordinator = stickyCoordinator;
     }
 
     class MyListAdapter extends BaseAdapter {
@@ -81,15 +87,4 @@ public class ListViewFragment extends Fragment {
         }
     }
 
-    public void adjusScrollPosition(int translationY) {
-        if(mStickyListView != null)
-            mStickyListView.adjustPositionByTranslationYOfStickyView(translationY);
-    }
-
-    public int getScrollTop() {
-        if(mStickyListView != null)
-            return mStickyListView.getScrollTop();
-        return 0;
-    }
-
 }
\ No newline at end of file
@@ -9,15 +9,14 @@ import android.support.v4.view.ViewPager;
 import android.view.View;
 import android.widget.LinearLayout;
 
-import com.hjy.stickyview.StickyScrollCallback;
+import com.hjy.stickyview.StickyCoordinator;
 
 public class MainActivity extends FragmentActivity {
 
     private ViewPager mViewPager;
     private LinearLayout mLayoutHeader;
 
-    private int mHeaderHeight;
-    private int mStickyViewTop;
+    private StickyCoordinator mStickyCoordinator;
 
     private ScrollViewFragment mScrollFragment;
     private ListViewFragment mListFragment;
@@ -47,41 +46,44 @@ public class MainActivity extends FragmentActivity {
 
         //获取header, sticky view等的高度
         mLayoutHeader.measure(View.MeasureSpec.UNSPECIFIED, View.MeasureSpec.UNSPECIFIED);
-        mHeaderHeight = mLayoutHeader.getMeasuredHeight();
-        mStickyViewTop = mLayoutHeader.getChildAt(0).getMeasuredHeight();
+        int headerHeight = mLayoutHeader.getMeasuredHeight();
+        int stickyViewTop = mLayoutHeader.getChildAt(0).getMeasuredHeight();
+        mStickyCoordinator = new StickyCoordinator(mLayoutHeader, headerHeight, stickyViewTop);
+        //滑动时header作为硬件层合成，不重复绘制
+        mStickyCoordinator.setHardwareLayerEnabled(true);
+        //header里的内容高度变化时，自动修改各页面的占位高度
+        mStickyCoordinator.startTrackingHeaderSize(mLayoutHeader.getChildAt(1));
         if(savedInstanceState != null) {
-            mLayoutHeader.setTranslationY(savedInstanceState.getInt("transY"));
+            mStickyCoordinator.onRestoreInstanceState(savedInstanceState.getParcelable("sticky"));
         }
 
-        mScrollFragment.setStickyScrollCallback(mCallback);
-        mListFragment.setStickyScrollCallback(mCallback);
-        mGridFragment.setStickyScrollCallback(mCallback);
+        mScrollFragment.setStickyCoordinator(mStickyCoordinator);
+        mListFragment.setStickyCoordinator(mStickyCoordinator);
+        mGridFragment.setStickyCoordinator(mStickyCoordinator);
 
         //tab点击切换时，需要调整位置
         MyPageAdapter adapter = new MyPageAdapter(getSupportFragmentManager());
         mViewPager.setOffscreenPageLimit(3);
         mViewPager.setAdapter(adapter);
-        mViewPager.addOnPageChangeListener(mPageChangeListener);
+        mStickyCoordinator.setSyncMode(StickyCoordinator.SYNC_MODE_NEIGHBORS);
+        mStickyCoordinator.attachToViewPager(mViewPager);
 
         findViewById(R.id.Button_Tab_ScrollView).setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
-                mPageChangeListener.onPageScrollStateChanged(ViewPager.SCROLL_STATE_DRAGGING);
-                mViewPager.setCurrentItem(0, true);
+                mStickyCoordinator.setCurrentItem(0, true);
             }
         });
         findViewById(R.id.Button_Tab_ListView).setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
-                mPageChangeListener.onPageScrollStateChanged(ViewPager.SCROLL_STATE_DRAGGING);
-                mViewPager.setCurrentItem(1, true);
+                mStickyCoordinator.setCurrentItem(1, true);
             }
         });
         findViewById(R.id.Button_Tab_GridView).setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
-                mPageChangeListener.onPageScrollStateChanged(ViewPager.SCROLL_STATE_DRAGGING);
-                mViewPager.setCurrentItem(2, true);
+                mStickyCoordinator.setCurrentItem(2, true);
             }
         });
     }
@@ -89,80 +91,9 @@ public class MainActivity extends FragmentActivity {
     @Override
     protected void onSaveInstanceState(Bundle outState) {
         super.onSaveInstanceState(outState);
-        outState.putInt("transY", (int) mLayoutHeader.getTranslationY());
+        outState.putParcelable("sticky", mStickyCoordinator.onSaveInstanceState());
     }
 
-    private ViewPager.OnPageChangeListener mPageChangeListener = new ViewPager.OnPageChangeListener() {
-        @Override
-        public void onPageScrolled(int position, float positionOffset, int positionOffsetPixels) {
-        }
-
-        @Override
-        public void onPageSelected(int position) {
-            int st = 0;
-            if (position == 0) {
-                st = mScrollFragment.getScrollTop();
-            } else if (position == 1) {
-                st = mListFragment.getScrollTop();
-            } else if(position == 2) {
-                st = mGridFragment.getScrollTop();
-            }
-            int tranY = (int) Math.abs(mLayoutHeader.getTranslationY());
-            if (tranY > st) {
-                st = Math.min(st, mStickyViewTop);
-                mLayoutHeader.setTranslationY(-st);
-                if(position == 0)
-                    mScrollFragment.adjusScrollPosition(-st);
-                else if(position == 1)
-                    mListFragment.adjusScrollPosition(-st);
-                else if(position == 2)
-                    mGridFragment.adjusScrollPosition(-st);
-            }
-        }
-
-        @Override
-        public void onPageScrollStateChanged(int state) {
-            if (state == ViewPager.SCROLL_STATE_DRAGGING) {
-                int currItem = mViewPager.getCurrentItem();
-                if (currItem == 0) {
-                    int transY = (int) mLayoutHeader.getTranslationY();
-                    mListFragment.adjusScrollPosition(transY);
-                    mGridFragment.adjusScrollPosition(transY);
-                } else if(currItem == 1) {
-                    int transY = (int) mLayoutHeader.getTranslationY();
-                    mScrollFragment.adjusScrollPosition(transY);
-                    mGridFragment.adjusScrollPosition(transY);
-                } else if(currItem == 2) {
-                    int transY = (int) mLayoutHeader.getTranslationY();
-                    mScrollFragment.adjusScrollPosition(transY);
-                    mListFragment.adjusScrollPosition(transY);
-                }
-            }
-        }
-    };
-
-    private StickyScrollCallback mCallback = new StickyScrollCallback() {
-        @Override
-        public void onScrollChanged(int translationY) {
-            mLayoutHeader.setTranslationY(translationY);
-        }
-
-        @Override
-        public int getCurrentItem() {
-            return mViewPager.getCurrentItem();
-        }
-
-        @Override
-        public int getHeaderViewHeight() {
-            return mHeaderHeight;
-        }
-
-        @Override
-        public int getStickyViewTop() {
-            return mStickyViewTop;
-        }
-    };
-
     class MyPageAdapter extends FragmentPagerAdapter {
 
         public MyPageAdapter(FragmentManager fm) {
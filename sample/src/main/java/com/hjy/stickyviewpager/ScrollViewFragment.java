@@ -8,7 +8,7 @@ import android.view.View;
 import android.view.ViewGroup;
 
 import com.hjy.stickyview.IStickyView;
-import com.hjy.stickyview.StickyScrollCallback;
+import com.hjy.stickyview.StickyCoordinator;
 import com.hjy.stickyview.StickyScrollView;
 
 /**
@@ -20,7 +20,7 @@ public class ScrollViewFragment extends Fragment {
 
     private IStickyView mStickyScrollView;
 
-    private StickyScrollCallback mStickyScrollCallback;
+    private StickyCoordinator mStickyCoordinator;
 
     @Nullable
     @Override
@@ -33,8 +33,7 @@ public class ScrollViewFragment extends Fragment {
     private void initViews() {
         mStickyScrollView = (StickyScrollView) findViewById(R.id.StickyScrollView);
 
-        mStickyScrollView.setPagePosition(0);
-        mStickyScrollView.setStickyScrollCallback(mStickyScrollCallback);
+        mStickyCoordinator.registerPage(0, mStickyScrollView);
         mStickyScrollView.setupHeadPlaceHolder(findViewById(R.id.TextView_Place_Holder));
     }
 
@@ -42,19 +41,14 @@ public class ScrollViewFragment extends Fragment {
         return mContentView.findViewById(id);
     }
 
-    public void setStickyScrollCallback(StickyScrollCallback stickyScrollCallback) {
-        mStickyScrollCallback = stickyScrollCallback;
-    }
-
-    public void adjusScrollPosition(int translationY) {
-        if(mStickyScrollView != null)
-            mStickyScrollView.adjustPositionByTranslationYOfStickyView(translationY);
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        mStickyCoordinator.unregisterPage(0);
     }
 
-    public int getScrollTop() {
-        if(mStickyScrollView != null)
-            return mStickyScrollView.getScrollTop();
-        return 0;
+    public void setStickyCoordinator(StickyCoordinator stickyCoordinator) {
+        mStickyCoordinator = stickyCoordinator;
     }
 
 }
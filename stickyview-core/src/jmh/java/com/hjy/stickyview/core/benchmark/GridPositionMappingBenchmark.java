@@ -0,0 +1,83 @@
+package com.hjy.stickyview.core.benchmark;
+
+import com.hjy.stickyview.core.GridSegmentTable;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HeaderViewGridAdapter的position映射：判断position所在的分段并换算成adapter里的position
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class GridPositionMappingBenchmark {
+
+    private static final int NUM_COLUMNS = 4;
+
+    @Param({"1000", "100000", "1000000"})
+    public int itemCount;
+
+    private GridSegmentTable mTable;
+    private int[] mPositions;
+    private int mCursor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        mTable = new GridSegmentTable(1, 1, itemCount, NUM_COLUMNS);
+        Random random = new Random(42);
+        mPositions = new int[4096];
+        for (int i = 0; i < mPositions.length; i++) {
+            mPositions[i] = random.nextInt(mTable.count);
+        }
+    }
+
+    @Benchmark
+    public int mapPosition() {
+        mCursor = (mCursor + 1) & (mPositions.length - 1);
+        int position = mPositions[mCursor];
+        switch (mTable.segmentOf(position)) {
+            case GridSegmentTable.SEGMENT_HEADER:
+                return -(position / NUM_COLUMNS) - 1;
+            case GridSegmentTable.SEGMENT_ADAPTER:
+                return position - mTable.headerEnd;
+            case GridSegmentTable.SEGMENT_PLACEHOLDER:
+                return Integer.MIN_VALUE;
+            default:
+                return Integer.MAX_VALUE - (position - mTable.placeholderEnd) / NUM_COLUMNS;
+        }
+    }
+
+    /**
+     * 一帧里GridView为一屏的格子调用getView()、getItemViewType()、isEnabled()时的映射次数
+     */
+    @Benchmark
+    public void mapVisibleCells(Blackhole blackhole) {
+        mCursor = (mCursor + 1) & (mPositions.length - 1);
+        int first = mPositions[mCursor] / NUM_COLUMNS * NUM_COLUMNS;
+        int end = Math.min(first + NUM_COLUMNS * 8, mTable.count);
+        for (int position = first; position < end; position++) {
+            blackhole.consume(mTable.segmentOf(position));
+            blackhole.consume(mTable.rowOf(position));
+        }
+    }
+
+    /**
+     * 数据变化时重建分段表
+     */
+    @Benchmark
+    public GridSegmentTable rebuild() {
+        return new GridSegmentTable(1, 1, itemCount, NUM_COLUMNS);
+    }
+}
@@ -0,0 +1,83 @@
+package com.hjy.stickyview.core.benchmark;
+
+import com.hjy.stickyview.core.ItemHeightIndex;
+import com.hjy.stickyview.core.StickyGeometry;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 滑动过程中的偏移值计算：记录一屏item的高度，再根据第一个可见item计算滑动距离和sticky view的translationY<br>
+ * 运行：./gradlew :stickyview-core:jmh，gc profiler会同时输出每次操作的内存分配
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ScrollOffsetBenchmark {
+
+    private static final int VISIBLE_ITEM_COUNT = 12;
+    private static final int STICKY_VIEW_TOP = 300;
+
+    @Param({"1000", "100000", "1000000"})
+    public int itemCount;
+
+    private ItemHeightIndex mHeightIndex;
+    private int[] mFirstVisiblePositions;
+    private int[] mHeights;
+    private int mCursor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        mHeightIndex = new ItemHeightIndex(itemCount);
+        for (int i = 0; i < itemCount; i += 2) {
+            mHeightIndex.setHeight(i, 100 + random.nextInt(200));
+        }
+        mFirstVisiblePositions = new int[4096];
+        int maxFirst = Math.max(1, itemCount - VISIBLE_ITEM_COUNT);
+        for (int i = 0; i < mFirstVisiblePositions.length; i++) {
+            mFirstVisiblePositions[i] = random.nextInt(maxFirst);
+        }
+        mHeights = new int[VISIBLE_ITEM_COUNT];
+        for (int i = 0; i < VISIBLE_ITEM_COUNT; i++) {
+            mHeights[i] = 100 + random.nextInt(200);
+        }
+    }
+
+    private int nextFirstVisiblePosition() {
+        mCursor = (mCursor + 1) & (mFirstVisiblePositions.length - 1);
+        return mFirstVisiblePositions[mCursor];
+    }
+
+    /**
+     * 只计算偏移值
+     */
+    @Benchmark
+    public int scrollTop() {
+        int first = nextFirstVisiblePosition();
+        return mHeightIndex.getOffset(first) + 37;
+    }
+
+    /**
+     * 一次onScroll回调的完整过程：记录可见item的高度，计算滑动距离，再转换成translationY
+     */
+    @Benchmark
+    public int onScroll() {
+        int first = nextFirstVisiblePosition();
+        for (int i = 0; i < VISIBLE_ITEM_COUNT; i++) {
+            mHeightIndex.setHeight(first + i, mHeights[i]);
+        }
+        int scrollTop = mHeightIndex.getOffset(first) + 37;
+        return StickyGeometry.toTranslationY(scrollTop, STICKY_VIEW_TOP);
+    }
+}
@@ -0,0 +1,103 @@
+package com.hjy.stickyview.core;
+
+/**
+ * 带header、footer的GridView里，header、adapter、空白占位、footer四段position的分界<br>
+ * 对象不可变，只在数据、列数变化时重建，查询时只需要整数比较，不需要分配对象和浮点运算
+ */
+public final class GridSegmentTable {
+
+    public static final int SEGMENT_HEADER = 0;
+    public static final int SEGMENT_ADAPTER = 1;
+    public static final int SEGMENT_PLACEHOLDER = 2;
+    public static final int SEGMENT_FOOTER = 3;
+
+    public final int numColumns;
+    /**
+     * adapter的数据个数
+     */
+    public final int adapterCount;
+    /**
+     * header所占position的结束位置(不包含)
+     */
+    public final int headerEnd;
+    /**
+     * adapter数据所占position的结束位置(不包含)
+     */
+    public final int adapterEnd;
+    /**
+     * 最后一行空白占位所占position的结束位置(不包含)
+     */
+    public final int placeholderEnd;
+    /**
+     * 总的position个数
+     */
+    public final int count;
+
+    public GridSegmentTable(int headerCount, int footerCount, int adapterCount, int numColumns) {
+        if (numColumns < 1)
+            throw new IllegalArgumentException("Number of columns must be 1 or more");
+        this.numColumns = numColumns;
+        this.adapterCount = adapterCount;
+        headerEnd = headerCount * numColumns;
+        adapterEnd = headerEnd + adapterCount;
+        placeholderEnd = headerEnd + (adapterCount + numColumns - 1) / numColumns * numColumns;
+        count = placeholderEnd + footerCount * numColumns;
+    }
+
+    /**
+     * 获取position所在的分段
+     *
+     * @param position GridView里的position
+     * @return SEGMENT_HEADER、SEGMENT_ADAPTER、SEGMENT_PLACEHOLDER或者SEGMENT_FOOTER
+     */
+    public int segmentOf(int position) {
+        if (position < 0 || position >= count)
+            throw new ArrayIndexOutOfBoundsException(position);
+        if (position < headerEnd)
+            return SEGMENT_HEADER;
+        if (position < adapterEnd)
+            return SEGMENT_ADAPTER;
+        if (position < placeholderEnd)
+            return SEGMENT_PLACEHOLDER;
+        return SEGMENT_FOOTER;
+    }
+
+    /**
+     * 获取position所在的行
+     *
+     * @param position GridView里的position
+     * @return 行号
+     */
+    public int rowOf(int position) {
+        return position / numColumns;
+    }
+
+    /**
+     * header、footer所在行里，除第一列以外的每个格子对应一个固定的占位View，获取格子的序号
+     *
+     * @param position   相对于header或者footer起始位置的position
+     * @param numColumns 列数
+     * @return 格子序号
+     */
+    public static int placeholderSlotOf(int position, int numColumns) {
+        return position / numColumns * (numColumns - 1) + position % numColumns - 1;
+    }
+
+    /**
+     * 被包装的adapter在末尾追加了item，header、footer和列数不变
+     *
+     * @param count 追加的item个数
+     * @return 新的分段表
+     */
+    public GridSegmentTable appendAdapterItems(int count) {
+        return new GridSegmentTable(headerEnd / numColumns, (this.count - placeholderEnd) / numColumns,
+                adapterCount + count, numColumns);
+    }
+
+    /**
+     * @return 总的行数
+     */
+    public int getRowCount() {
+        return count / numColumns;
+    }
+}
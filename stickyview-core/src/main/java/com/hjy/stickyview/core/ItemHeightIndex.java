@@ -0,0 +1,305 @@
+package com.hjy.stickyview.core;
+
+import java.util.Arrays;
+
+/**
+ * 记录每个position的item高度，基于树状数组(Fenwick tree)实现，可以在O(log n)内求出任意position之前所有item的高度之和<br>
+ * 还没有测量过的item，使用已测量item的平均高度来估算
+ */
+public class ItemHeightIndex {
+
+    private static final int UNMEASURED = -1;
+
+    /**
+     * 每个position的实际高度，未测量时为UNMEASURED
+     */
+    private int[] mHeights = new int[0];
+
+    /**
+     * 已测量item高度的树状数组
+     */
+    private long[] mHeightTree = new long[1];
+
+    /**
+     * 已测量item个数的树状数组
+     */
+    private int[] mCountTree = new int[1];
+
+    private int mSize;
+
+    private long mMeasuredHeight;
+    private int mMeasuredCount;
+
+    public ItemHeightIndex() {
+    }
+
+    public ItemHeightIndex(int size) {
+        reset(size);
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * 清空所有已测量的高度，并重新设置item数量
+     *
+     * @param size item数量
+     */
+    public void reset(int size) {
+        if (size < 0)
+            throw new IllegalArgumentException("size must be >= 0");
+        if (mHeights.length < size) {
+            mHeights = new int[size];
+            mHeightTree = new long[size + 1];
+            mCountTree = new int[size + 1];
+        } else {
+            Arrays.fill(mHeightTree, 0, size + 1, 0);
+            Arrays.fill(mCountTree, 0, size + 1, 0);
+        }
+        Arrays.fill(mHeights, 0, size, UNMEASURED);
+        mSize = size;
+        mMeasuredHeight = 0;
+        mMeasuredCount = 0;
+    }
+
+    /**
+     * 重新设置item数量，保留[0, min(旧数量, 新数量))之间已测量的高度，时间复杂度为O(n)
+     *
+     * @param size item数量
+     */
+    public void resize(int size) {
+        if (size < 0)
+            throw new IllegalArgumentException("size must be >= 0");
+        if (size == mSize)
+            return;
+        int keep = Math.min(mSize, size);
+        if (mHeights.length < size) {
+            int[] heights = new int[size];
+            System.arraycopy(mHeights, 0, heights, 0, keep);
+            mHeights = heights;
+            mHeightTree = new long[size + 1];
+            mCountTree = new int[size + 1];
+        }
+        Arrays.fill(mHeights, keep, size, UNMEASURED);
+        mSize = size;
+        rebuild();
+    }
+
+    /**
+     * 在position处插入count个未测量的item，原来[position, size)的高度整体后移，时间复杂度为O(n)
+     *
+     * @param position 插入位置
+     * @param count    插入的item个数
+     */
+    public void insert(int position, int count) {
+        if (position < 0 || position > mSize)
+            throw new IndexOutOfBoundsException("position: " + position + ", size: " + mSize);
+        if (count <= 0)
+            return;
+        int size = mSize + count;
+        if (mHeights.length < size) {
+            int[] heights = new int[Math.max(size, mHeights.length * 2)];
+            System.arraycopy(mHeights, 0, heights, 0, mSize);
+            mHeights = heights;
+            mHeightTree = new long[heights.length + 1];
+            mCountTree = new int[heights.length + 1];
+        }
+        System.arraycopy(mHeights, position, mHeights, position + count, mSize - position);
+        Arrays.fill(mHeights, position, position + count, UNMEASURED);
+        mSize = size;
+        rebuild();
+    }
+
+    /**
+     * 根据mHeights线性重建树状数组
+     */
+    private void rebuild() {
+        Arrays.fill(mHeightTree, 0, mSize + 1, 0);
+        Arrays.fill(mCountTree, 0, mSize + 1, 0);
+        mMeasuredHeight = 0;
+        mMeasuredCount = 0;
+        for (int i = 1; i <= mSize; i++) {
+            int height = mHeights[i - 1];
+            if (height != UNMEASURED) {
+                mHeightTree[i] += height;
+                mCountTree[i] += 1;
+                mMeasuredHeight += height;
+                mMeasuredCount++;
+            }
+            int parent = i + (i & (-i));
+            if (parent <= mSize) {
+                mHeightTree[parent] += mHeightTree[i];
+                mCountTree[parent] += mCountTree[i];
+            }
+        }
+    }
+
+    /**
+     * 设置某个position的高度
+     *
+     * @param position item位置
+     * @param height   测量得到的高度
+     */
+    public void setHeight(int position, int height) {
+        if (position < 0 || position >= mSize)
+            return;
+        if (height < 0)
+            height = 0;
+        int old = mHeights[position];
+        if (old == height)
+            return;
+        if (old == UNMEASURED) {
+            updateCount(position, 1);
+            mMeasuredCount++;
+            updateHeight(position, height);
+            mMeasuredHeight += height;
+        } else {
+            updateHeight(position, height - old);
+            mMeasuredHeight += height - old;
+        }
+        mHeights[position] = height;
+    }
+
+    /**
+     * 使[start, end)之间的item高度之和等于totalHeight：已测量的item保持不变，剩下的高度平均分配给未测量的item，
+     * 余数加在第一个未测量的item上；已测量的高度之和已经超过totalHeight时，未测量的item高度为0<br>
+     * 用于恢复状态时只知道某个item的顶部偏移值、不知道前面每个item高度的情况，之后会被实际测量的高度覆盖
+     *
+     * @param start       起始位置(包含)
+     * @param end         结束位置(不包含)
+     * @param totalHeight 这些item的高度之和
+     */
+    public void distributeHeight(int start, int end, int totalHeight) {
+        if (start < 0)
+            start = 0;
+        if (end > mSize)
+            end = mSize;
+        if (end <= start || totalHeight < 0)
+            return;
+        long measuredHeight = 0;
+        int unmeasured = 0;
+        for (int i = start; i < end; i++) {
+            if (mHeights[i] == UNMEASURED) {
+                unmeasured++;
+            } else {
+                measuredHeight += mHeights[i];
+            }
+        }
+        if (unmeasured == 0)
+            return;
+        int remaining = (int) Math.max(0, totalHeight - measuredHeight);
+        int height = remaining / unmeasured;
+        int remainder = remaining - height * unmeasured;
+        for (int i = start; i < end; i++) {
+            if (mHeights[i] != UNMEASURED)
+                continue;
+            setHeight(i, height + remainder);
+            remainder = 0;
+        }
+    }
+
+    /**
+     * 获取某个position已测量的高度
+     *
+     * @param position item位置
+     * @return 已测量的高度，未测量则返回-1
+     */
+    public int getHeight(int position) {
+        if (position < 0 || position >= mSize)
+            return UNMEASURED;
+        return mHeights[position];
+    }
+
+    public boolean isMeasured(int position) {
+        return getHeight(position) != UNMEASURED;
+    }
+
+    /**
+     * 将某个position的高度标记为未测量
+     *
+     * @param position item位置
+     */
+    public void invalidate(int position) {
+        if (position < 0 || position >= mSize)
+            return;
+        int old = mHeights[position];
+        if (old == UNMEASURED)
+            return;
+        updateCount(position, -1);
+        mMeasuredCount--;
+        updateHeight(position, -old);
+        mMeasuredHeight -= old;
+        mHeights[position] = UNMEASURED;
+    }
+
+    /**
+     * 获取未测量item的估算高度，即已测量item的平均高度
+     *
+     * @return 估算高度
+     */
+    public int getEstimatedHeight() {
+        if (mMeasuredCount == 0)
+            return 0;
+        return (int) (mMeasuredHeight / mMeasuredCount);
+    }
+
+    /**
+     * 获取[0, position)之间所有item的高度之和，即position所在item的顶部偏移值
+     *
+     * @param position item位置
+     * @return 顶部偏移值
+     */
+    public int getOffset(int position) {
+        if (position <= 0)
+            return 0;
+        if (position > mSize)
+            position = mSize;
+        long height = 0;
+        int count = 0;
+        for (int i = position; i > 0; i -= i & (-i)) {
+            height += mHeightTree[i];
+            count += mCountTree[i];
+        }
+        int unmeasured = position - count;
+        return (int) (height + (long) unmeasured * getEstimatedHeight());
+    }
+
+    /**
+     * 获取offset所在的item，即满足getOffset(position) <= offset的最大position，时间复杂度为O(log n)
+     *
+     * @param offset 相对于第一个item顶部的偏移值
+     * @return item位置，没有item时返回0
+     */
+    public int findPosition(int offset) {
+        if (offset < 0 || mSize == 0)
+            return 0;
+        int estimatedHeight = getEstimatedHeight();
+        int position = 0;
+        long remaining = offset;
+        for (int step = Integer.highestOneBit(mSize); step > 0; step >>= 1) {
+            int next = position + step;
+            if (next > mSize)
+                continue;
+            // 树状数组的第next个节点正好覆盖(position, next]这step个item
+            long height = mHeightTree[next] + (long) (step - mCountTree[next]) * estimatedHeight;
+            if (height <= remaining) {
+                position = next;
+                remaining -= height;
+            }
+        }
+        return Math.min(position, mSize - 1);
+    }
+
+    private void updateHeight(int position, int delta) {
+        for (int i = position + 1; i <= mSize; i += i & (-i)) {
+            mHeightTree[i] += delta;
+        }
+    }
+
+    private void updateCount(int position, int delta) {
+        for (int i = position + 1; i <= mSize; i += i & (-i)) {
+            mCountTree[i] += delta;
+        }
+    }
+}
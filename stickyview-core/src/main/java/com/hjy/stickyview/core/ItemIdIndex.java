@@ -0,0 +1,119 @@
+package com.hjy.stickyview.core;
+
+import java.util.Arrays;
+
+/**
+ * stable id到position的索引，基于开放寻址(线性探测)的哈希表，查找、插入的平均时间复杂度为O(1)<br>
+ * id和position分别存放在long[]、int[]里，不需要装箱，容量足够时put()、get()都不会分配对象
+ */
+public class ItemIdIndex {
+
+    public static final int NOT_FOUND = -1;
+
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] mIds;
+
+    /**
+     * 每个槽位对应的position，空槽位为NOT_FOUND
+     */
+    private int[] mPositions;
+
+    private int mSize;
+
+    public ItemIdIndex() {
+        allocate(MIN_CAPACITY);
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * 清空所有id
+     */
+    public void clear() {
+        if (mSize == 0)
+            return;
+        Arrays.fill(mPositions, NOT_FOUND);
+        mSize = 0;
+    }
+
+    /**
+     * 保证可以放入size个id而不需要扩容，重建索引前调用可以避免多次rehash
+     *
+     * @param size id个数
+     */
+    public void ensureCapacity(int size) {
+        // 负载因子不超过0.5，保证线性探测的长度很短
+        int capacity = mPositions.length;
+        if (size * 2 <= capacity)
+            return;
+        while (size * 2 > capacity) {
+            capacity <<= 1;
+        }
+        long[] ids = mIds;
+        int[] positions = mPositions;
+        allocate(capacity);
+        for (int i = 0; i < positions.length; i++) {
+            if (positions[i] != NOT_FOUND) {
+                int slot = slotOf(ids[i]);
+                mIds[slot] = ids[i];
+                mPositions[slot] = positions[i];
+            }
+        }
+    }
+
+    /**
+     * 记录id所在的position，id已经存在时覆盖原来的position
+     *
+     * @param id       item的stable id
+     * @param position item位置，必须大于等于0
+     */
+    public void put(long id, int position) {
+        if (position < 0)
+            throw new IllegalArgumentException("position must be >= 0");
+        ensureCapacity(mSize + 1);
+        int slot = slotOf(id);
+        if (mPositions[slot] == NOT_FOUND)
+            mSize++;
+        mIds[slot] = id;
+        mPositions[slot] = position;
+    }
+
+    /**
+     * 获取id所在的position
+     *
+     * @param id item的stable id
+     * @return item位置，不存在时返回NOT_FOUND
+     */
+    public int get(long id) {
+        return mPositions[slotOf(id)];
+    }
+
+    private void allocate(int capacity) {
+        mIds = new long[capacity];
+        mPositions = new int[capacity];
+        Arrays.fill(mPositions, NOT_FOUND);
+    }
+
+    /**
+     * 获取id所在的槽位，不存在时返回探测到的第一个空槽位
+     */
+    private int slotOf(long id) {
+        int mask = mPositions.length - 1;
+        int slot = hash(id) & mask;
+        while (mPositions[slot] != NOT_FOUND && mIds[slot] != id) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * 连续的id(数据库自增主键、下标)乘以黄金分割常数后分散到整个表
+     */
+    private static int hash(long id) {
+        long h = id * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
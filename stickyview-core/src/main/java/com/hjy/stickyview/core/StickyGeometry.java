@@ -0,0 +1,50 @@
+package com.hjy.stickyview.core;
+
+/**
+ * sticky view相关的偏移值计算，StickyListView、StickyGridView、StickyScrollView等共用，不依赖Android平台
+ */
+public final class StickyGeometry {
+
+    private StickyGeometry() {
+    }
+
+    /**
+     * 将滑动距离限制在[0, stickyViewTop]之间
+     *
+     * @param scrollTop     往上滑动的距离
+     * @param stickyViewTop sticky view距离顶部的距离
+     * @return sticky view需要往上移动的距离
+     */
+    public static int clampScrollTop(int scrollTop, int stickyViewTop) {
+        if (scrollTop > stickyViewTop)
+            scrollTop = stickyViewTop;
+        if (scrollTop < 0)
+            scrollTop = 0;
+        return scrollTop;
+    }
+
+    /**
+     * 根据滑动距离计算sticky view的translationY值
+     *
+     * @param scrollTop     往上滑动的距离
+     * @param stickyViewTop sticky view距离顶部的距离
+     * @return sticky view的translationY值，范围为[-stickyViewTop, 0]
+     */
+    public static int toTranslationY(int scrollTop, int stickyViewTop) {
+        return -clampScrollTop(scrollTop, stickyViewTop);
+    }
+
+    /**
+     * 页面切换时，判断页面是否需要根据sticky view的偏移值调整自己的滑动位置<br>
+     * sticky view已经停在顶部，并且页面滑动的距离已经超过该偏移值时，不需要调整
+     *
+     * @param translationY  sticky view的translationY值，一般为负数
+     * @param stickyViewTop sticky view距离顶部的距离
+     * @param scrollTop     页面当前往上滑动的距离
+     * @return 是否需要调整
+     */
+    public static boolean needsReposition(int translationY, int stickyViewTop, int scrollTop) {
+        int transY = Math.abs(translationY);
+        return transY < stickyViewTop || scrollTop < transY;
+    }
+}
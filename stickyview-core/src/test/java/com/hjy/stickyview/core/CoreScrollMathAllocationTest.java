@@ -0,0 +1,149 @@
+package com.hjy.stickyview.core;
+
+import com.google.monitoring.runtime.instrumentation.AllocationRecorder;
+import com.google.monitoring.runtime.instrumentation.Sampler;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 模拟10秒的fling，按StickyListView、StickyGridView每一帧调用core的顺序执行ItemHeightIndex、GridSegmentTable、
+ * StickyGeometry里的计算，期间这些类发生任何内存分配都会失败<br>
+ * 只覆盖core模块：View这一侧的代码(onScroll()、HeaderViewGridAdapter.getView()、StickyScrollDispatcher等)
+ * 由stickyview模块harness里的ScrollAllocationTest在Robolectric里检查<br>
+ * 需要java-allocation-instrumenter作为javaagent运行，build.gradle里的test任务已经配置
+ */
+public class CoreScrollMathAllocationTest {
+
+    private static final int FRAMES = 600;
+    private static final long FRAME_INTERVAL_MS = 16;
+    private static final float FLING_DECAY = 0.995f;
+
+    private static final int ITEM_COUNT = 100000;
+    private static final int ITEM_HEIGHT = 180;
+    private static final int VIEWPORT_HEIGHT = 1280;
+    private static final int NUM_COLUMNS = 3;
+    private static final int HEADER_HEIGHT = 400;
+    private static final int STICKY_VIEW_TOP = 300;
+
+    private final ItemHeightIndex mItemHeightIndex = new ItemHeightIndex(ITEM_COUNT + 1);
+    private final ItemHeightIndex mRowHeightIndex = new ItemHeightIndex(ITEM_COUNT / NUM_COLUMNS + 2);
+    private final GridSegmentTable mSegmentTable = new GridSegmentTable(1, 1, ITEM_COUNT, NUM_COLUMNS);
+
+    private final CountingSampler mSampler = new CountingSampler();
+
+    /**
+     * 防止计算结果被优化掉
+     */
+    private long mSink;
+
+    @Test
+    public void flingDoesNotAllocate() {
+        AllocationRecorder.addSampler(mSampler);
+        try {
+            assertAgentInstalled();
+
+            // 预热，类加载和第一次测量允许分配
+            fling(60);
+            mSampler.start();
+            fling(FRAMES);
+            mSampler.stop();
+        } finally {
+            AllocationRecorder.removeSampler(mSampler);
+        }
+        assertEquals("Allocations during fling, first: " + mSampler.mFirstDescription, 0, mSampler.mCount);
+    }
+
+    private void assertAgentInstalled() {
+        mSampler.start();
+        mSink += new int[1].length;
+        mSampler.stop();
+        assertTrue("java-allocation-instrumenter agent is not installed", mSampler.mCount > 0);
+        mSampler.reset();
+    }
+
+    /**
+     * 每一帧：记录可见item的高度，计算滑动距离和translationY，判断是否需要调整位置，
+     * 再按GridView的方式映射可见的每个position
+     */
+    private void fling(int frames) {
+        int scrollTop = 0;
+        float velocity = 30000;
+        int lastTranslationY = Integer.MIN_VALUE;
+        for (int frame = 0; frame < frames; frame++) {
+            scrollTop += (int) (velocity * FRAME_INTERVAL_MS / 1000);
+            velocity *= FLING_DECAY;
+
+            // StickyListView.onScroll()里对core的调用
+            int first = Math.max(0, (scrollTop - HEADER_HEIGHT) / ITEM_HEIGHT + 1);
+            int visible = VIEWPORT_HEIGHT / ITEM_HEIGHT + 2;
+            mItemHeightIndex.setHeight(0, HEADER_HEIGHT);
+            for (int i = 0; i < visible; i++) {
+                mItemHeightIndex.setHeight(first + i, ITEM_HEIGHT);
+            }
+            int listScrollTop = mItemHeightIndex.getOffset(first) + 17;
+            int translationY = StickyGeometry.toTranslationY(listScrollTop, STICKY_VIEW_TOP);
+            // 模拟StickyScrollDispatcher只分发变化的值
+            if (translationY != lastTranslationY) {
+                lastTranslationY = translationY;
+                mSink += translationY;
+            }
+            mSink += StickyGeometry.needsReposition(translationY, STICKY_VIEW_TOP, listScrollTop) ? 1 : 0;
+
+            // StickyGridView.onScroll()和HeaderViewGridAdapter.getView()里对core的调用
+            int firstRow = first / NUM_COLUMNS;
+            int visibleRows = visible / NUM_COLUMNS + 2;
+            for (int row = firstRow; row < firstRow + visibleRows && row < mRowHeightIndex.size(); row++) {
+                mRowHeightIndex.setHeight(row, ITEM_HEIGHT);
+                for (int column = 0; column < NUM_COLUMNS; column++) {
+                    int position = row * NUM_COLUMNS + column;
+                    if (position >= mSegmentTable.count)
+                        break;
+                    int segment = mSegmentTable.segmentOf(position);
+                    if (segment == GridSegmentTable.SEGMENT_HEADER && column > 0) {
+                        mSink += GridSegmentTable.placeholderSlotOf(position, NUM_COLUMNS);
+                    } else if (segment == GridSegmentTable.SEGMENT_FOOTER && column > 0) {
+                        mSink += GridSegmentTable.placeholderSlotOf(position - mSegmentTable.placeholderEnd, NUM_COLUMNS);
+                    } else {
+                        mSink += segment;
+                    }
+                }
+            }
+            mSink += StickyGeometry.toTranslationY(mRowHeightIndex.getOffset(firstRow), STICKY_VIEW_TOP);
+        }
+    }
+
+    /**
+     * 只统计当前线程在start()和stop()之间的分配
+     */
+    private static class CountingSampler implements Sampler {
+
+        private volatile Thread mRecordingThread;
+        long mCount;
+        String mFirstDescription;
+
+        void start() {
+            mRecordingThread = Thread.currentThread();
+        }
+
+        void stop() {
+            mRecordingThread = null;
+        }
+
+        void reset() {
+            mCount = 0;
+            mFirstDescription = null;
+        }
+
+        @Override
+        public void sampleAllocation(int count, String desc, Object newObj, long size) {
+            if (Thread.currentThread() != mRecordingThread)
+                return;
+            if (mCount == 0)
+                mFirstDescription = desc;
+            mCount++;
+        }
+    }
+}
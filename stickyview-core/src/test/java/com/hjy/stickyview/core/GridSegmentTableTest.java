@@ -0,0 +1,92 @@
+package com.hjy.stickyview.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 和逐个position展开的参考实现比较分段、行号以及header、footer占位格子的序号
+ */
+public class GridSegmentTableTest {
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsZeroColumns() {
+        new GridSegmentTable(1, 1, 10, 0);
+    }
+
+    @Test(expected = ArrayIndexOutOfBoundsException.class)
+    public void rejectsPositionOutOfRange() {
+        GridSegmentTable table = new GridSegmentTable(1, 1, 10, 3);
+        table.segmentOf(table.count);
+    }
+
+    @Test
+    public void matchesReferenceModel() {
+        for (int numColumns = 1; numColumns <= 5; numColumns++) {
+            for (int headers = 0; headers <= 3; headers++) {
+                for (int footers = 0; footers <= 3; footers++) {
+                    for (int adapterCount = 0; adapterCount <= 3 * numColumns + 1; adapterCount++) {
+                        GridSegmentTable table = new GridSegmentTable(headers, footers, adapterCount, numColumns);
+                        assertSameSegments(table, headers, footers, adapterCount, numColumns);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void appendMatchesNewTable() {
+        for (int numColumns = 1; numColumns <= 4; numColumns++) {
+            for (int adapterCount = 0; adapterCount <= 2 * numColumns + 1; adapterCount++) {
+                for (int appended = 0; appended <= 2 * numColumns + 1; appended++) {
+                    GridSegmentTable table = new GridSegmentTable(2, 1, adapterCount, numColumns).appendAdapterItems(appended);
+                    assertSameSegments(table, 2, 1, adapterCount + appended, numColumns);
+                }
+            }
+        }
+    }
+
+    private static void assertSameSegments(GridSegmentTable table, int headers, int footers, int adapterCount, int numColumns) {
+        List<Integer> segments = new ArrayList<Integer>();
+        for (int i = 0; i < headers * numColumns; i++) {
+            segments.add(GridSegmentTable.SEGMENT_HEADER);
+        }
+        for (int i = 0; i < adapterCount; i++) {
+            segments.add(GridSegmentTable.SEGMENT_ADAPTER);
+        }
+        while (segments.size() % numColumns != 0) {
+            segments.add(GridSegmentTable.SEGMENT_PLACEHOLDER);
+        }
+        int placeholderEnd = segments.size();
+        for (int i = 0; i < footers * numColumns; i++) {
+            segments.add(GridSegmentTable.SEGMENT_FOOTER);
+        }
+
+        String name = "headers=" + headers + ", footers=" + footers + ", adapterCount=" + adapterCount + ", numColumns=" + numColumns;
+        assertEquals(name, segments.size(), table.count);
+        assertEquals(name, segments.size() / numColumns, table.getRowCount());
+        assertEquals(name, adapterCount, table.adapterCount);
+        assertEquals(name, placeholderEnd, table.placeholderEnd);
+
+        // header、footer每一行除第一列以外的格子依次编号
+        int headerSlot = 0;
+        int footerSlot = 0;
+        for (int position = 0; position < segments.size(); position++) {
+            int segment = segments.get(position);
+            assertEquals(name + ", position=" + position, segment, table.segmentOf(position));
+            assertEquals(name + ", position=" + position, position / numColumns, table.rowOf(position));
+            if (position % numColumns == 0)
+                continue;
+            if (segment == GridSegmentTable.SEGMENT_HEADER) {
+                assertEquals(name + ", position=" + position, headerSlot++,
+                        GridSegmentTable.placeholderSlotOf(position, numColumns));
+            } else if (segment == GridSegmentTable.SEGMENT_FOOTER) {
+                assertEquals(name + ", position=" + position, footerSlot++,
+                        GridSegmentTable.placeholderSlotOf(position - table.placeholderEnd, numColumns));
+            }
+        }
+    }
+}
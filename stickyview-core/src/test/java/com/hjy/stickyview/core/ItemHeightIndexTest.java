@@ -0,0 +1,252 @@
+package com.hjy.stickyview.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 随机执行ItemHeightIndex的各种修改，每一步之后和逐个累加的参考实现比较所有查询结果
+ */
+public class ItemHeightIndexTest {
+
+    private static final int ITERATIONS = 300;
+    private static final int OPERATIONS = 60;
+    private static final int MAX_SIZE = 200;
+    private static final int MAX_HEIGHT = 300;
+
+    @Test
+    public void unmeasuredItemsUseAverageHeight() {
+        ItemHeightIndex index = new ItemHeightIndex(5);
+        index.setHeight(0, 100);
+        index.setHeight(2, 200);
+        assertEquals(150, index.getEstimatedHeight());
+        assertEquals(100, index.getOffset(1));
+        assertEquals(250, index.getOffset(2));
+        assertEquals(450, index.getOffset(3));
+        assertEquals(750, index.getOffset(5));
+        assertEquals(2, index.findPosition(250));
+        assertEquals(1, index.findPosition(249));
+        assertEquals(4, index.findPosition(10000));
+    }
+
+    @Test
+    public void distributeHeightKeepsMeasuredItems() {
+        ItemHeightIndex index = new ItemHeightIndex(5);
+        index.setHeight(0, 400);
+        index.distributeHeight(0, 4, 1005);
+        assertEquals(400, index.getHeight(0));
+        assertEquals(203, index.getHeight(1));
+        assertEquals(201, index.getHeight(2));
+        assertEquals(201, index.getHeight(3));
+        assertEquals(1005, index.getOffset(4));
+    }
+
+    @Test
+    public void distributeHeightWithTooSmallTotalUsesZero() {
+        ItemHeightIndex index = new ItemHeightIndex(3);
+        index.setHeight(0, 400);
+        index.distributeHeight(0, 3, 100);
+        assertEquals(400, index.getHeight(0));
+        assertEquals(0, index.getHeight(1));
+        assertEquals(0, index.getHeight(2));
+    }
+
+    @Test
+    public void matchesReferenceModel() {
+        Random random = new Random(20151015);
+        for (int iteration = 0; iteration < ITERATIONS; iteration++) {
+            int size = random.nextInt(MAX_SIZE);
+            ItemHeightIndex index = new ItemHeightIndex(size);
+            ReferenceHeights reference = new ReferenceHeights(size);
+            for (int operation = 0; operation < OPERATIONS; operation++) {
+                applyRandomOperation(random, index, reference);
+                assertSameQueries(random, index, reference);
+            }
+        }
+    }
+
+    private static void applyRandomOperation(Random random, ItemHeightIndex index, ReferenceHeights reference) {
+        int size = reference.size();
+        switch (random.nextInt(10)) {
+            case 0: {
+                int newSize = random.nextInt(MAX_SIZE);
+                index.reset(newSize);
+                reference.reset(newSize);
+                break;
+            }
+            case 1: {
+                int newSize = random.nextInt(MAX_SIZE);
+                index.resize(newSize);
+                reference.resize(newSize);
+                break;
+            }
+            case 2: {
+                int position = random.nextInt(size + 1);
+                int count = random.nextInt(20);
+                index.insert(position, count);
+                reference.insert(position, count);
+                break;
+            }
+            case 3: {
+                int position = random.nextInt(size + 2) - 1;
+                index.invalidate(position);
+                reference.invalidate(position);
+                break;
+            }
+            case 4: {
+                int start = random.nextInt(size + 1);
+                int end = start + random.nextInt(size - start + 3);
+                int totalHeight = random.nextInt(MAX_HEIGHT * (end - start + 1) + 1);
+                index.distributeHeight(start, end, totalHeight);
+                reference.distributeHeight(start, end, totalHeight);
+                break;
+            }
+            default: {
+                // 包括越界的position和负数高度
+                int position = random.nextInt(size + 2) - 1;
+                int height = random.nextInt(MAX_HEIGHT + 10) - 10;
+                index.setHeight(position, height);
+                reference.setHeight(position, height);
+                break;
+            }
+        }
+    }
+
+    private static void assertSameQueries(Random random, ItemHeightIndex index, ReferenceHeights reference) {
+        int size = reference.size();
+        assertEquals(size, index.size());
+        assertEquals(reference.getEstimatedHeight(), index.getEstimatedHeight());
+        long[] offsets = reference.getOffsets();
+        for (int position = -1; position <= size + 1; position++) {
+            int expectedOffset = (int) offsets[Math.max(0, Math.min(position, size))];
+            assertEquals("height at " + position, reference.getHeight(position), index.getHeight(position));
+            assertEquals("offset at " + position, expectedOffset, index.getOffset(position));
+        }
+        for (int position = 0; position <= size; position++) {
+            int offset = (int) offsets[position];
+            assertEquals("findPosition(" + offset + ")", findPosition(offsets, offset), index.findPosition(offset));
+            assertEquals("findPosition(" + (offset - 1) + ")", findPosition(offsets, offset - 1), index.findPosition(offset - 1));
+        }
+        int offset = random.nextInt((int) offsets[size] + 2);
+        assertEquals("findPosition(" + offset + ")", findPosition(offsets, offset), index.findPosition(offset));
+    }
+
+    /**
+     * 满足offsets[position] <= offset的最大position
+     */
+    private static int findPosition(long[] offsets, int offset) {
+        int size = offsets.length - 1;
+        if (offset < 0 || size == 0)
+            return 0;
+        int position = 0;
+        for (int i = 1; i <= size; i++) {
+            if (offsets[i] <= offset)
+                position = i;
+        }
+        return Math.min(position, size - 1);
+    }
+
+    /**
+     * 直接保存每个item的高度，所有查询都逐个累加
+     */
+    private static class ReferenceHeights {
+
+        private final List<Integer> mHeights = new ArrayList<Integer>();
+
+        ReferenceHeights(int size) {
+            reset(size);
+        }
+
+        int size() {
+            return mHeights.size();
+        }
+
+        void reset(int size) {
+            mHeights.clear();
+            resize(size);
+        }
+
+        void resize(int size) {
+            while (mHeights.size() > size) {
+                mHeights.remove(mHeights.size() - 1);
+            }
+            while (mHeights.size() < size) {
+                mHeights.add(-1);
+            }
+        }
+
+        void insert(int position, int count) {
+            for (int i = 0; i < count; i++) {
+                mHeights.add(position, -1);
+            }
+        }
+
+        void setHeight(int position, int height) {
+            if (position < 0 || position >= size())
+                return;
+            mHeights.set(position, Math.max(0, height));
+        }
+
+        void invalidate(int position) {
+            if (position < 0 || position >= size())
+                return;
+            mHeights.set(position, -1);
+        }
+
+        void distributeHeight(int start, int end, int totalHeight) {
+            end = Math.min(end, size());
+            long measured = 0;
+            List<Integer> unmeasured = new ArrayList<Integer>();
+            for (int i = start; i < end; i++) {
+                if (mHeights.get(i) < 0) {
+                    unmeasured.add(i);
+                } else {
+                    measured += mHeights.get(i);
+                }
+            }
+            if (unmeasured.isEmpty())
+                return;
+            int remaining = (int) Math.max(0, totalHeight - measured);
+            int height = remaining / unmeasured.size();
+            for (int i = 0; i < unmeasured.size(); i++) {
+                int extra = i == 0 ? remaining - height * unmeasured.size() : 0;
+                mHeights.set(unmeasured.get(i), height + extra);
+            }
+        }
+
+        int getHeight(int position) {
+            if (position < 0 || position >= size())
+                return -1;
+            return mHeights.get(position);
+        }
+
+        int getEstimatedHeight() {
+            long sum = 0;
+            int count = 0;
+            for (int height : mHeights) {
+                if (height >= 0) {
+                    sum += height;
+                    count++;
+                }
+            }
+            return count == 0 ? 0 : (int) (sum / count);
+        }
+
+        /**
+         * @return 第i个元素为[0, i)之间所有item的高度之和，未测量的item使用平均高度
+         */
+        long[] getOffsets() {
+            int estimated = getEstimatedHeight();
+            long[] offsets = new long[size() + 1];
+            for (int i = 0; i < size(); i++) {
+                int height = mHeights.get(i);
+                offsets[i + 1] = offsets[i] + (height >= 0 ? height : estimated);
+            }
+            return offsets;
+        }
+    }
+}
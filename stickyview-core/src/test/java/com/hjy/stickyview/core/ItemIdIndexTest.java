@@ -0,0 +1,79 @@
+package com.hjy.stickyview.core;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 和HashMap比较put、get、clear的结果，包括大量冲突的id
+ */
+public class ItemIdIndexTest {
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNegativePosition() {
+        new ItemIdIndex().put(1, -1);
+    }
+
+    @Test
+    public void missingIdReturnsNotFound() {
+        ItemIdIndex index = new ItemIdIndex();
+        assertEquals(ItemIdIndex.NOT_FOUND, index.get(0));
+        index.put(Long.MIN_VALUE, 3);
+        index.put(Long.MAX_VALUE, 4);
+        assertEquals(3, index.get(Long.MIN_VALUE));
+        assertEquals(4, index.get(Long.MAX_VALUE));
+        assertEquals(ItemIdIndex.NOT_FOUND, index.get(0));
+        index.clear();
+        assertEquals(0, index.size());
+        assertEquals(ItemIdIndex.NOT_FOUND, index.get(Long.MIN_VALUE));
+    }
+
+    @Test
+    public void matchesHashMap() {
+        Random random = new Random(20151015);
+        for (int iteration = 0; iteration < 50; iteration++) {
+            ItemIdIndex index = new ItemIdIndex();
+            Map<Long, Integer> reference = new HashMap<Long, Integer>();
+            if (iteration % 2 == 0)
+                index.ensureCapacity(random.nextInt(1000));
+            int puts = random.nextInt(3000);
+            for (int i = 0; i < puts; i++) {
+                long id = randomId(random, iteration);
+                int position = random.nextInt(100000);
+                index.put(id, position);
+                reference.put(id, position);
+                if (random.nextInt(500) == 0) {
+                    index.clear();
+                    reference.clear();
+                }
+            }
+            assertEquals(reference.size(), index.size());
+            for (Map.Entry<Long, Integer> entry : reference.entrySet()) {
+                assertEquals((int) entry.getValue(), index.get(entry.getKey()));
+            }
+            for (int i = 0; i < 1000; i++) {
+                long id = randomId(random, iteration);
+                Integer expected = reference.get(id);
+                assertEquals(expected != null ? expected : ItemIdIndex.NOT_FOUND, index.get(id));
+            }
+        }
+    }
+
+    /**
+     * 分别使用小范围内重复的id、步长为2的幂的id(容易冲突)和完全随机的id
+     */
+    private static long randomId(Random random, int iteration) {
+        switch (iteration % 3) {
+            case 0:
+                return random.nextInt(2000) - 1000;
+            case 1:
+                return (long) random.nextInt(4000) << 16;
+            default:
+                return random.nextLong();
+        }
+    }
+}
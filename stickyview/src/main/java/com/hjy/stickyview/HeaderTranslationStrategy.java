@@ -0,0 +1,129 @@
+package com.hjy.stickyview;
+
+import android.view.View;
+import android.view.ViewGroup;
+
+/**
+ * header的移动方式，由StickyCoordinator使用<br>
+ * 1. TranslationY: setTranslationY()，只修改RenderNode属性，不触发布局，默认方式<br>
+ * 2. OffsetTopAndBottom: offsetTopAndBottom()，直接移动View的位置，父View重新布局后恢复偏移<br>
+ * 3. LayoutOffset: 修改topMargin，每次移动都会触发一次布局
+ */
+public interface HeaderTranslationStrategy {
+
+    /**
+     * 开始管理某个header，切换策略时会先调用原来策略的detach()
+     *
+     * @param header header view
+     */
+    public void attach(View header);
+
+    /**
+     * 停止管理header，需要把header恢复到没有偏移的状态
+     *
+     * @param header header view
+     */
+    public void detach(View header);
+
+    public void setTranslationY(View header, int translationY);
+
+    public int getTranslationY(View header);
+
+    public static class TranslationY implements HeaderTranslationStrategy {
+
+        @Override
+        public void attach(View header) {
+        }
+
+        @Override
+        public void detach(View header) {
+            header.setTranslationY(0);
+        }
+
+        @Override
+        public void setTranslationY(View header, int translationY) {
+            header.setTranslationY(translationY);
+        }
+
+        @Override
+        public int getTranslationY(View header) {
+            return (int) header.getTranslationY();
+        }
+    }
+
+    public static class OffsetTopAndBottom implements HeaderTranslationStrategy, View.OnLayoutChangeListener {
+
+        private int mOffset;
+
+        @Override
+        public void attach(View header) {
+            header.addOnLayoutChangeListener(this);
+        }
+
+        @Override
+        public void detach(View header) {
+            header.removeOnLayoutChangeListener(this);
+            header.offsetTopAndBottom(-mOffset);
+            mOffset = 0;
+        }
+
+        @Override
+        public void setTranslationY(View header, int translationY) {
+            if (translationY == mOffset)
+                return;
+            header.offsetTopAndBottom(translationY - mOffset);
+            mOffset = translationY;
+        }
+
+        @Override
+        public int getTranslationY(View header) {
+            return mOffset;
+        }
+
+        @Override
+        public void onLayoutChange(View v, int left, int top, int right, int bottom,
+                                   int oldLeft, int oldTop, int oldRight, int oldBottom) {
+            // 重新布局会把header放回原来的位置，需要重新偏移
+            v.offsetTopAndBottom(mOffset);
+        }
+    }
+
+    public static class LayoutOffset implements HeaderTranslationStrategy {
+
+        private int mBaseTopMargin;
+        private int mOffset;
+
+        @Override
+        public void attach(View header) {
+            ViewGroup.MarginLayoutParams params = getLayoutParams(header);
+            mBaseTopMargin = params.topMargin;
+        }
+
+        @Override
+        public void detach(View header) {
+            setTranslationY(header, 0);
+        }
+
+        @Override
+        public void setTranslationY(View header, int translationY) {
+            if (translationY == mOffset)
+                return;
+            mOffset = translationY;
+            ViewGroup.MarginLayoutParams params = getLayoutParams(header);
+            params.topMargin = mBaseTopMargin + translationY;
+            header.setLayoutParams(params);
+        }
+
+        @Override
+        public int getTranslationY(View header) {
+            return mOffset;
+        }
+
+        private static ViewGroup.MarginLayoutParams getLayoutParams(View header) {
+            ViewGroup.LayoutParams params = header.getLayoutParams();
+            if (!(params instanceof ViewGroup.MarginLayoutParams))
+                throw new IllegalStateException("LayoutOffset requires the header to have MarginLayoutParams");
+            return (ViewGroup.MarginLayoutParams) params;
+        }
+    }
+}
@@ -29,6 +29,13 @@ public interface IStickyView {
      */
     public void setupHeadPlaceHolder(View view);
 
+    /**
+     * header高度变化时，直接修改头部占位View的高度，不需要重新setAdapter()，也不会改变当前的滑动位置
+     *
+     * @param height 新的header高度
+     */
+    public void setHeadPlaceHolderHeight(int height);
+
     /**
      * 触发sticky view滚动后，如果几个页面之间进行切换，需要根据当前sticky view的偏移值来调整自己的滚动位置
      *
@@ -42,4 +49,28 @@ public interface IStickyView {
      * @return 往上滑动的距离
      */
     public int getScrollTop();
+
+    /**
+     * 获取用于保存滑动位置的锚点，即第一个可见item在Adapter里的position，ScrollView返回0
+     *
+     * @return 锚点position
+     */
+    public int getAnchorPosition();
+
+    /**
+     * 获取锚点item的顶部相对于View顶部的偏移，一般为负数
+     *
+     * @return 锚点偏移
+     */
+    public int getAnchorOffset();
+
+    /**
+     * 恢复保存的滑动位置，在下一次布局里直接定位到最终位置，不会额外触发调整<br>
+     * 还没有设置Adapter时，等到setAdapter()之后再恢复
+     *
+     * @param anchorPosition 保存时getAnchorPosition()的值
+     * @param anchorOffset   保存时getAnchorOffset()的值
+     * @param scrollTop      保存时getScrollTop()的值
+     */
+    public void restoreScrollPosition(int anchorPosition, int anchorOffset, int scrollTop);
 }
\ No newline at end of file
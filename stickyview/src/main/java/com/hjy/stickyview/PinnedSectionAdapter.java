@@ -0,0 +1,38 @@
+package com.hjy.stickyview;
+
+import android.view.View;
+import android.view.ViewGroup;
+
+/**
+ * 由StickyListView、StickyGridView的Adapter实现，提供分组信息，当前分组的header会固定绘制在页面sticky header的下方<br>
+ * 每个分组的第一个item一般就是该分组的header行，固定的header只是它的绘制副本，不会添加到View树里
+ */
+public interface PinnedSectionAdapter {
+
+    /**
+     * 获取position所在的分组
+     *
+     * @param position Adapter里的position，不包括addHeaderView()添加的header
+     * @return 分组序号，不属于任何分组时返回-1
+     */
+    public int getSectionForPosition(int position);
+
+    /**
+     * 获取分组第一个item的position
+     *
+     * @param section 分组序号
+     * @return 第一个item的position，分组不存在时返回-1
+     */
+    public int getPositionForSection(int section);
+
+    /**
+     * 获取用于绘制固定header的View，只会被测量和绘制到缓存里<br>
+     * 同一个分组的绘制结果会被缓存，数据变化后通过notifyDataSetChanged()清除缓存
+     *
+     * @param section     分组序号
+     * @param convertView 可以复用的View
+     * @param parent      StickyListView或者StickyGridView
+     * @return 分组header的View
+     */
+    public View getSectionHeaderView(int section, View convertView, ViewGroup parent);
+}
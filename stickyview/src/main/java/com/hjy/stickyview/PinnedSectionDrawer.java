@@ -0,0 +1,158 @@
+package com.hjy.stickyview;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.AbsListView;
+
+import com.hjy.stickyview.core.StickyGeometry;
+
+/**
+ * 在AbsListView的dispatchDraw()里绘制当前分组的固定header<br>
+ * 每个分组的header只测量、绘制一次，结果按分组缓存为Bitmap，滑动时直接绘制缓存，不创建也不布局View<br>
+ * 固定header放在页面sticky header的下边缘，下一个分组的第一个item到达时把它往上推，并且不会画到sticky header的区域里
+ */
+final class PinnedSectionDrawer {
+
+    private static final int MAX_CACHED_SECTIONS = 4;
+
+    private final AbsListView mHost;
+
+    /**
+     * 按最近使用排序的分组缓存，用int数组保存分组序号，查询时不需要装箱
+     */
+    private final int[] mCachedSections = new int[MAX_CACHED_SECTIONS];
+    private final Bitmap[] mCachedBitmaps = new Bitmap[MAX_CACHED_SECTIONS];
+    private int mCachedCount;
+    private final Canvas mCacheCanvas = new Canvas();
+    private View mConvertView;
+
+    PinnedSectionDrawer(AbsListView host) {
+        mHost = host;
+    }
+
+    /**
+     * 清除所有分组的缓存，数据或者宽度变化时调用
+     */
+    void invalidate() {
+        for (int i = 0; i < mCachedCount; i++) {
+            mCachedBitmaps[i] = null;
+        }
+        mCachedCount = 0;
+    }
+
+    /**
+     * 查找分组的缓存，找到时移到最前面
+     */
+    private Bitmap getCachedBitmap(int section) {
+        for (int i = 0; i < mCachedCount; i++) {
+            if (mCachedSections[i] == section) {
+                Bitmap bitmap = mCachedBitmaps[i];
+                moveToFront(i, section, bitmap);
+                return bitmap;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 放到最前面，缓存已满时丢弃最久没有使用的分组
+     */
+    private void putCachedBitmap(int section, Bitmap bitmap) {
+        if (mCachedCount < MAX_CACHED_SECTIONS) {
+            mCachedCount++;
+        }
+        moveToFront(mCachedCount - 1, section, bitmap);
+    }
+
+    private void moveToFront(int index, int section, Bitmap bitmap) {
+        for (int i = index; i > 0; i--) {
+            mCachedSections[i] = mCachedSections[i - 1];
+            mCachedBitmaps[i] = mCachedBitmaps[i - 1];
+        }
+        mCachedSections[0] = section;
+        mCachedBitmaps[0] = bitmap;
+    }
+
+    /**
+     * @param canvas      dispatchDraw()的canvas
+     * @param adapter     提供分组信息的Adapter
+     * @param headerCount addHeaderView()添加的header在Adapter里占用的position数量
+     * @param pinnedTop   固定header的顶部，即页面sticky header的下边缘
+     */
+    void draw(Canvas canvas, PinnedSectionAdapter adapter, int headerCount, int pinnedTop) {
+        int childCount = mHost.getChildCount();
+        int firstVisiblePosition = mHost.getFirstVisiblePosition();
+        int index = 0;
+        while (index < childCount && mHost.getChildAt(index).getBottom() <= pinnedTop) {
+            index++;
+        }
+        if (index == childCount)
+            return;
+        int position = firstVisiblePosition + index - headerCount;
+        if (position < 0)
+            return;
+        int section = adapter.getSectionForPosition(position);
+        if (section < 0)
+            return;
+        // 分组的第一个item还完整地显示在固定位置的下方，不需要绘制
+        if (adapter.getPositionForSection(section) == position && mHost.getChildAt(index).getTop() >= pinnedTop)
+            return;
+        Bitmap bitmap = getSectionBitmap(adapter, section);
+        if (bitmap == null)
+            return;
+
+        int top = pinnedTop;
+        int nextPosition = adapter.getPositionForSection(section + 1);
+        if (nextPosition >= 0) {
+            int nextIndex = nextPosition + headerCount - firstVisiblePosition;
+            if (nextIndex >= 0 && nextIndex < childCount) {
+                top = Math.min(top, mHost.getChildAt(nextIndex).getTop() - bitmap.getHeight());
+            }
+        }
+
+        int saveCount = canvas.save();
+        canvas.clipRect(0, pinnedTop, mHost.getWidth(), mHost.getHeight());
+        canvas.drawBitmap(bitmap, mHost.getPaddingLeft(), top, null);
+        canvas.restoreToCount(saveCount);
+    }
+
+    /**
+     * 固定header的顶部，即页面sticky header当前的下边缘
+     */
+    static int getPinnedTop(IStickyView stickyView) {
+        StickyScrollCallback callback = stickyView.getStickyScrollCallback();
+        if (callback == null)
+            return 0;
+        return callback.getHeaderViewHeight() + StickyGeometry.toTranslationY(stickyView.getScrollTop(), callback.getStickyViewTop());
+    }
+
+    private Bitmap getSectionBitmap(PinnedSectionAdapter adapter, int section) {
+        Bitmap bitmap = getCachedBitmap(section);
+        if (bitmap != null)
+            return bitmap;
+        int width = mHost.getWidth() - mHost.getPaddingLeft() - mHost.getPaddingRight();
+        if (width <= 0)
+            return null;
+        View view = adapter.getSectionHeaderView(section, mConvertView, mHost);
+        if (view == null)
+            return null;
+        mConvertView = view;
+        ViewGroup.LayoutParams params = view.getLayoutParams();
+        int heightMeasureSpec = params != null && params.height > 0
+                ? View.MeasureSpec.makeMeasureSpec(params.height, View.MeasureSpec.EXACTLY)
+                : View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED);
+        view.measure(View.MeasureSpec.makeMeasureSpec(width, View.MeasureSpec.EXACTLY), heightMeasureSpec);
+        int height = view.getMeasuredHeight();
+        if (height <= 0)
+            return null;
+        view.layout(0, 0, width, height);
+        bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        mCacheCanvas.setBitmap(bitmap);
+        view.draw(mCacheCanvas);
+        mCacheCanvas.setBitmap(null);
+        putCachedBitmap(section, bitmap);
+        return bitmap;
+    }
+}
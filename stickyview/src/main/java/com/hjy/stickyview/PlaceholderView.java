@@ -0,0 +1,61 @@
+package com.hjy.stickyview;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.util.AttributeSet;
+import android.view.View;
+
+/**
+ * 仅用于占位的View，不绘制任何内容，也没有文字排版，测量结果为固定高度<br>
+ * 可以作为setupHeadPlaceHolder()的参数，代替空的TextView
+ */
+public class PlaceholderView extends View {
+
+    private int mPlaceholderHeight;
+
+    public PlaceholderView(Context context) {
+        this(context, null);
+    }
+
+    public PlaceholderView(Context context, AttributeSet attrs) {
+        this(context, attrs, 0);
+    }
+
+    public PlaceholderView(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+        setWillNotDraw(true);
+    }
+
+    /**
+     * 设置占位高度，高度不变时不会触发requestLayout()
+     *
+     * @param height 占位高度
+     */
+    public void setPlaceholderHeight(int height) {
+        if (mPlaceholderHeight == height)
+            return;
+        mPlaceholderHeight = height;
+        requestLayout();
+    }
+
+    public int getPlaceholderHeight() {
+        return mPlaceholderHeight;
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        int width = MeasureSpec.getMode(widthMeasureSpec) == MeasureSpec.UNSPECIFIED ? 0 : MeasureSpec.getSize(widthMeasureSpec);
+        int height;
+        if (MeasureSpec.getMode(heightMeasureSpec) == MeasureSpec.EXACTLY) {
+            height = MeasureSpec.getSize(heightMeasureSpec);
+        } else {
+            height = Math.max(mPlaceholderHeight, getSuggestedMinimumHeight());
+        }
+        setMeasuredDimension(width, height);
+    }
+
+    @Override
+    public void draw(Canvas canvas) {
+        // 占位View不需要绘制
+    }
+}
@@ -0,0 +1,136 @@
+package com.hjy.stickyview;
+
+import android.widget.AdapterView;
+import android.widget.ListAdapter;
+
+import com.hjy.stickyview.core.ItemIdIndex;
+
+/**
+ * Adapter的hasStableIds()为true时，在notifyDataSetChanged()之后按id恢复第一个可见的数据item<br>
+ * AbsListView自己只按原来的position同步，数据插入、删除、排序后看到的就不再是同一个item<br>
+ * 每次布局、滑动后记录第一个可见数据item的id、顶部偏移以及当时的scrollTop，数据变化后的第一次布局里：<br>
+ * 1. 原position上仍然是同一个id时不需要处理，只访问一次getItemId()<br>
+ * 2. 否则在id索引里查找，索引在数据变化后第一次需要时遍历一次重建，之后的查找为O(1)；追加数据时只添加新的item
+ */
+class StableIdAnchor {
+
+    private final ItemIdIndex mIndex = new ItemIdIndex();
+
+    /**
+     * mIndex是否和当前的数据一致
+     */
+    private boolean mIndexValid;
+
+    private boolean mHasAnchor;
+    private long mAnchorId;
+    private int mAnchorPosition;
+    private int mAnchorTop;
+    private int mScrollTop;
+
+    /**
+     * 数据变化后还没有按id重新定位
+     */
+    private boolean mNeedsResync;
+
+    /**
+     * 记录第一个可见的数据item，滑动路径上调用，不分配对象
+     *
+     * @param adapter   ListView、GridView当前的adapter
+     * @param position  第一个可见的数据item的position
+     * @param top       它的顶部坐标
+     * @param scrollTop 当前的滑动距离
+     */
+    void record(ListAdapter adapter, int position, int top, int scrollTop) {
+        if(!adapter.hasStableIds()) {
+            mHasAnchor = false;
+            return;
+        }
+        mHasAnchor = true;
+        mAnchorId = adapter.getItemId(position);
+        mAnchorPosition = position;
+        mAnchorTop = top;
+        mScrollTop = scrollTop;
+    }
+
+    /**
+     * 第一个可见的不是数据item(例如头部占位还在屏幕上)，此时按position同步就是正确的
+     */
+    void clearAnchor() {
+        mHasAnchor = false;
+    }
+
+    void onDataChanged() {
+        mIndexValid = false;
+        mNeedsResync = mHasAnchor;
+    }
+
+    void onInvalidated() {
+        mIndexValid = false;
+        mHasAnchor = false;
+        mNeedsResync = false;
+    }
+
+    /**
+     * adapter末尾追加了数据，原来的position不变，只把新的item加入索引
+     *
+     * @param start 新数据的起始position(包含)
+     * @param end   新数据的结束position(不包含)
+     */
+    void onItemsAppended(ListAdapter adapter, int start, int end) {
+        if(!mIndexValid)
+            return;
+        mIndex.ensureCapacity(mIndex.size() + end - start);
+        for(int i = start; i < end; i++) {
+            mIndex.put(adapter.getItemId(i), i);
+        }
+    }
+
+    /**
+     * 通过restoreScrollPosition()主动定位时，不再按id同步
+     */
+    void cancelResync() {
+        mNeedsResync = false;
+    }
+
+    boolean needsResync() {
+        return mNeedsResync;
+    }
+
+    /**
+     * 在数据变化后的第一次布局之前调用，只会返回一次结果
+     *
+     * @param start 数据item的起始position(包含)
+     * @param end   数据item的结束position(不包含)
+     * @return 锚点item的新position，位置没有变化或者已经被删除时返回INVALID_POSITION
+     */
+    int findResyncPosition(ListAdapter adapter, int start, int end) {
+        mNeedsResync = false;
+        if(!mHasAnchor || !adapter.hasStableIds())
+            return AdapterView.INVALID_POSITION;
+        if(mAnchorPosition >= start && mAnchorPosition < end && adapter.getItemId(mAnchorPosition) == mAnchorId)
+            return AdapterView.INVALID_POSITION;
+        if(!mIndexValid) {
+            StickyTrace.beginSection("StableIdAnchor#rebuild");
+            try {
+                mIndex.clear();
+                mIndex.ensureCapacity(end - start);
+                for(int i = start; i < end; i++) {
+                    mIndex.put(adapter.getItemId(i), i);
+                }
+                mIndexValid = true;
+            } finally {
+                StickyTrace.endSection();
+            }
+        }
+        int position = mIndex.get(mAnchorId);
+        return position != ItemIdIndex.NOT_FOUND ? position : AdapterView.INVALID_POSITION;
+    }
+
+    int getAnchorTop() {
+        return mAnchorTop;
+    }
+
+    int getScrollTop() {
+        return mScrollTop;
+    }
+}
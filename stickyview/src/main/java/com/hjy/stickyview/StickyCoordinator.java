@@ -0,0 +1,498 @@
+package com.hjy.stickyview;
+
+import android.os.Parcelable;
+import android.support.v4.view.ViewPager;
+import android.util.SparseArray;
+import android.util.SparseBooleanArray;
+import android.view.View;
+import android.view.ViewParent;
+import android.view.ViewTreeObserver;
+
+import com.hjy.stickyview.core.StickyGeometry;
+
+/**
+ * 协调ViewPager里多个IStickyView页面和同一个sticky header之间的滑动<br>
+ * 负责header的偏移、当前页面以及header的尺寸，页面只需要调用registerPage()注册即可，不再需要在Activity里手写同步逻辑
+ */
+public class StickyCoordinator implements StickyScrollStateCallback, ViewPager.OnPageChangeListener {
+
+    /**
+     * 开始拖动时，立即调整除当前页面以外的所有页面
+     */
+    public static final int SYNC_MODE_ALL = 0;
+
+    /**
+     * 开始拖动时只把其它页面标记为需要调整，等到页面第一次露出来时再立即调整
+     */
+    public static final int SYNC_MODE_NEIGHBORS = 1;
+
+    private final View mHeaderView;
+
+    private int mHeaderHeight;
+    private int mStickyViewTop;
+
+    /**
+     * 以page position为key保存已注册的页面
+     */
+    private final SparseArray<IStickyView> mPages = new SparseArray<IStickyView>();
+
+    private ViewPager mViewPager;
+    private int mCurrentItem;
+
+    private int mSyncMode = SYNC_MODE_ALL;
+
+    /**
+     * 滑动位置还没有和header同步的页面
+     */
+    private final SparseBooleanArray mDirtyPages = new SparseBooleanArray();
+
+    /**
+     * 从保存的状态里恢复、但页面还没有注册的滑动位置，value为{锚点position, 锚点偏移, scrollTop}
+     */
+    private final SparseArray<int[]> mPendingScrollPositions = new SparseArray<int[]>();
+
+    /**
+     * header里需要停在顶部的View，不为null时跟踪header的尺寸变化
+     */
+    private View mTrackedStickyView;
+
+    /**
+     * onLayoutChange()在布局过程中回调，此时修改其它页面的占位高度会导致"requestLayout() improperly called during layout"，
+     * 所以放到绘制之前处理
+     */
+    private final View.OnLayoutChangeListener mHeaderLayoutChangeListener = new View.OnLayoutChangeListener() {
+        @Override
+        public void onLayoutChange(View v, int left, int top, int right, int bottom,
+                                   int oldLeft, int oldTop, int oldRight, int oldBottom) {
+            if (mHeaderSizeUpdateScheduled)
+                return;
+            mHeaderSizeUpdateScheduled = true;
+            mHeaderView.getViewTreeObserver().addOnPreDrawListener(mHeaderSizePreDrawListener);
+        }
+    };
+
+    private boolean mHeaderSizeUpdateScheduled;
+
+    private final ViewTreeObserver.OnPreDrawListener mHeaderSizePreDrawListener = new ViewTreeObserver.OnPreDrawListener() {
+        @Override
+        public boolean onPreDraw() {
+            mHeaderView.getViewTreeObserver().removeOnPreDrawListener(this);
+            mHeaderSizeUpdateScheduled = false;
+            if (mTrackedStickyView == null)
+                return true;
+            // 占位高度变化后取消这一次绘制，重新布局后再绘制，不会以旧的占位高度显示一帧
+            return !updateHeaderSize();
+        }
+    };
+
+    private HeaderTranslationStrategy mTranslationStrategy = new HeaderTranslationStrategy.TranslationY();
+
+    /**
+     * 滑动过程中是否把header提升为硬件层
+     */
+    private boolean mHardwareLayerEnabled;
+    private boolean mHardwareLayerPromoted;
+    private int mSavedLayerType;
+
+    /**
+     * @param headerView    所有页面共用的header
+     * @param headerHeight  header的高度
+     * @param stickyViewTop sticky view距离header顶部的距离，即header最多可以往上移动的距离
+     */
+    public StickyCoordinator(View headerView, int headerHeight, int stickyViewTop) {
+        if (headerView == null)
+            throw new IllegalArgumentException("headerView cannot be null");
+        mHeaderView = headerView;
+        mHeaderHeight = headerHeight;
+        mStickyViewTop = stickyViewTop;
+    }
+
+    /**
+     * 监听ViewPager的页面切换
+     *
+     * @param viewPager 页面所在的ViewPager
+     */
+    public void attachToViewPager(ViewPager viewPager) {
+        if (mViewPager != null) {
+            mViewPager.removeOnPageChangeListener(this);
+        }
+        mViewPager = viewPager;
+        if (viewPager != null) {
+            mCurrentItem = viewPager.getCurrentItem();
+            viewPager.addOnPageChangeListener(this);
+        }
+    }
+
+    /**
+     * 注册一个页面，必须在该页面的setupHeadPlaceHolder()之前调用<br>
+     * 注册时header已经移动过的话，页面会在第一次布局时直接处于和header对应的滑动位置
+     *
+     * @param position   页面所在的position
+     * @param stickyView 页面里的IStickyView
+     */
+    public void registerPage(int position, IStickyView stickyView) {
+        stickyView.setPagePosition(position);
+        stickyView.setStickyScrollCallback(this);
+        mPages.put(position, stickyView);
+        int[] scrollPosition = mPendingScrollPositions.get(position);
+        if (scrollPosition != null) {
+            mPendingScrollPositions.remove(position);
+            stickyView.restoreScrollPosition(scrollPosition[0], scrollPosition[1], scrollPosition[2]);
+        } else if (position != getCurrentItem() && getHeaderTranslationY() != 0) {
+            // 新页面还没有滑动过，直接以头部占位View为锚点定位到header当前的偏移，第一次布局时就已经和header同步
+            int translationY = getHeaderTranslationY();
+            stickyView.restoreScrollPosition(0, translationY, -translationY);
+            mDirtyPages.delete(position);
+        }
+    }
+
+    /**
+     * 移除已注册的页面，一般在页面销毁时调用
+     *
+     * @param position 页面所在的position
+     */
+    public void unregisterPage(int position) {
+        mPages.remove(position);
+        mDirtyPages.delete(position);
+    }
+
+    public IStickyView getPage(int position) {
+        return mPages.get(position);
+    }
+
+    /**
+     * 跟踪header的尺寸变化，例如banner、异步加载的文字导致header变高<br>
+     * header每次布局后，更新getHeaderViewHeight()和getStickyViewTop()，并直接修改各页面头部占位View的高度，
+     * 不需要重新设置Adapter，也不会改变页面的滑动位置
+     *
+     * @param stickyView header里需要停在顶部的View，它相对于header顶部的距离即为stickyViewTop
+     */
+    public void startTrackingHeaderSize(View stickyView) {
+        if (stickyView == null)
+            throw new IllegalArgumentException("stickyView cannot be null");
+        if (mTrackedStickyView == null) {
+            mHeaderView.addOnLayoutChangeListener(mHeaderLayoutChangeListener);
+        }
+        mTrackedStickyView = stickyView;
+        if (mHeaderView.getHeight() > 0) {
+            updateHeaderSize();
+        }
+    }
+
+    public void stopTrackingHeaderSize() {
+        if (mTrackedStickyView == null)
+            return;
+        mHeaderView.removeOnLayoutChangeListener(mHeaderLayoutChangeListener);
+        if (mHeaderSizeUpdateScheduled) {
+            mHeaderSizeUpdateScheduled = false;
+            mHeaderView.getViewTreeObserver().removeOnPreDrawListener(mHeaderSizePreDrawListener);
+        }
+        mTrackedStickyView = null;
+    }
+
+    /**
+     * @return 是否修改了页面占位View的高度
+     */
+    private boolean updateHeaderSize() {
+        int headerHeight = mHeaderView.getHeight();
+        int stickyViewTop = getTopInHeader(mTrackedStickyView);
+        if (headerHeight == mHeaderHeight && stickyViewTop == mStickyViewTop)
+            return false;
+        boolean heightChanged = headerHeight != mHeaderHeight;
+        mHeaderHeight = headerHeight;
+        mStickyViewTop = stickyViewTop;
+        if (heightChanged) {
+            for (int i = 0, size = mPages.size(); i < size; i++) {
+                mPages.valueAt(i).setHeadPlaceHolderHeight(headerHeight);
+            }
+        }
+        // 占位View的高度已经修正，页面的滑动距离不变，只需要按新的stickyViewTop重新计算header的偏移
+        IStickyView page = mPages.get(getCurrentItem());
+        if (page != null) {
+            setHeaderTranslationY(StickyGeometry.toTranslationY(page.getScrollTop(), stickyViewTop));
+        } else {
+            setHeaderTranslationY(Math.max(getHeaderTranslationY(), -stickyViewTop));
+        }
+        return heightChanged && mPages.size() > 0;
+    }
+
+    /**
+     * 获取view相对于header顶部的距离，不包括translationY
+     */
+    private int getTopInHeader(View view) {
+        int top = 0;
+        View child = view;
+        while (child != mHeaderView) {
+            top += child.getTop();
+            ViewParent parent = child.getParent();
+            if (!(parent instanceof View))
+                throw new IllegalStateException("stickyView must be a descendant of the header view");
+            child = (View) parent;
+        }
+        return top;
+    }
+
+    /**
+     * 保存header的偏移值以及所有已注册页面的滑动位置，一般在Activity的onSaveInstanceState()里调用
+     *
+     * @return 保存的状态
+     */
+    public Parcelable onSaveInstanceState() {
+        int size = mPages.size();
+        int[] pageStates = new int[size * StickySavedState.PAGE_STATE_SIZE];
+        for (int i = 0; i < size; i++) {
+            IStickyView page = mPages.valueAt(i);
+            int offset = i * StickySavedState.PAGE_STATE_SIZE;
+            pageStates[offset] = mPages.keyAt(i);
+            pageStates[offset + 1] = page.getAnchorPosition();
+            pageStates[offset + 2] = page.getAnchorOffset();
+            pageStates[offset + 3] = page.getScrollTop();
+        }
+        return new StickySavedState(getHeaderTranslationY(), pageStates);
+    }
+
+    /**
+     * 恢复onSaveInstanceState()保存的状态，已注册的页面立即恢复，其余页面在registerPage()时恢复<br>
+     * 页面在第一次布局时就直接处于保存时的位置，不需要再通过adjustPositionByTranslationYOfStickyView()调整
+     *
+     * @param state onSaveInstanceState()的返回值
+     */
+    public void onRestoreInstanceState(Parcelable state) {
+        if (!(state instanceof StickySavedState))
+            return;
+        StickySavedState savedState = (StickySavedState) state;
+        setHeaderTranslationY(savedState.headerTranslationY);
+        int[] pageStates = savedState.pageStates;
+        for (int i = 0, count = savedState.getPageCount(); i < count; i++) {
+            int offset = i * StickySavedState.PAGE_STATE_SIZE;
+            int position = pageStates[offset];
+            IStickyView page = mPages.get(position);
+            if (page != null) {
+                page.restoreScrollPosition(pageStates[offset + 1], pageStates[offset + 2], pageStates[offset + 3]);
+            } else {
+                mPendingScrollPositions.put(position, new int[]{pageStates[offset + 1], pageStates[offset + 2], pageStates[offset + 3]});
+            }
+        }
+    }
+
+    /**
+     * 设置拖动ViewPager时其它页面的同步方式
+     *
+     * @param syncMode SYNC_MODE_ALL或者SYNC_MODE_NEIGHBORS
+     */
+    public void setSyncMode(int syncMode) {
+        if (syncMode != SYNC_MODE_ALL && syncMode != SYNC_MODE_NEIGHBORS)
+            throw new IllegalArgumentException("Unknown sync mode: " + syncMode);
+        mSyncMode = syncMode;
+    }
+
+    public int getSyncMode() {
+        return mSyncMode;
+    }
+
+    /**
+     * 切换到某个页面，例如点击tab时调用，切换之前会先同步其它页面的滑动位置
+     *
+     * @param item         页面position
+     * @param smoothScroll 是否平滑滚动
+     */
+    public void setCurrentItem(int item, boolean smoothScroll) {
+        syncPagesWithHeader(getCurrentItem());
+        if (mViewPager != null) {
+            mViewPager.setCurrentItem(item, smoothScroll);
+        } else {
+            mCurrentItem = item;
+            onPageSelected(item);
+        }
+    }
+
+    public int getHeaderTranslationY() {
+        return mTranslationStrategy.getTranslationY(mHeaderView);
+    }
+
+    public void setHeaderTranslationY(int translationY) {
+        mTranslationStrategy.setTranslationY(mHeaderView, translationY);
+    }
+
+    /**
+     * 设置header的移动方式，默认为HeaderTranslationStrategy.TranslationY，切换时保持header当前的偏移值
+     *
+     * @param strategy header的移动方式
+     */
+    public void setTranslationStrategy(HeaderTranslationStrategy strategy) {
+        if (strategy == null)
+            throw new IllegalArgumentException("strategy cannot be null");
+        if (strategy == mTranslationStrategy)
+            return;
+        int translationY = getHeaderTranslationY();
+        mTranslationStrategy.detach(mHeaderView);
+        mTranslationStrategy = strategy;
+        strategy.attach(mHeaderView);
+        strategy.setTranslationY(mHeaderView, translationY);
+    }
+
+    public HeaderTranslationStrategy getTranslationStrategy() {
+        return mTranslationStrategy;
+    }
+
+    /**
+     * 开启后，页面开始拖动或者fling时把header设置为LAYER_TYPE_HARDWARE，停止滑动后恢复原来的layer type<br>
+     * 滑动过程中header只作为一张纹理参与合成，子View的invalidate不会导致整个header重新绘制
+     *
+     * @param enabled 是否开启，默认关闭
+     */
+    public void setHardwareLayerEnabled(boolean enabled) {
+        mHardwareLayerEnabled = enabled;
+        if (!enabled) {
+            demoteHeaderLayer();
+        }
+    }
+
+    public boolean isHardwareLayerEnabled() {
+        return mHardwareLayerEnabled;
+    }
+
+    private void promoteHeaderLayer() {
+        if (mHardwareLayerPromoted)
+            return;
+        mHardwareLayerPromoted = true;
+        mSavedLayerType = mHeaderView.getLayerType();
+        if (mSavedLayerType != View.LAYER_TYPE_HARDWARE) {
+            mHeaderView.setLayerType(View.LAYER_TYPE_HARDWARE, null);
+        }
+    }
+
+    private void demoteHeaderLayer() {
+        if (!mHardwareLayerPromoted)
+            return;
+        mHardwareLayerPromoted = false;
+        if (mSavedLayerType != View.LAYER_TYPE_HARDWARE) {
+            mHeaderView.setLayerType(mSavedLayerType, null);
+        }
+    }
+
+    public View getHeaderView() {
+        return mHeaderView;
+    }
+
+    /**
+     * 根据header当前的偏移值，调整除当前页面以外所有页面的滑动位置<br>
+     * SYNC_MODE_NEIGHBORS模式下只标记为需要调整，不会触发布局
+     */
+    private void syncPagesWithHeader(int currentItem) {
+        int transY = getHeaderTranslationY();
+        for (int i = 0, size = mPages.size(); i < size; i++) {
+            int position = mPages.keyAt(i);
+            if (position == currentItem)
+                continue;
+            if (mSyncMode == SYNC_MODE_NEIGHBORS) {
+                mDirtyPages.put(position, true);
+            } else {
+                adjustPage(mPages.valueAt(i), transY);
+            }
+        }
+    }
+
+    /**
+     * 如果页面需要调整，则根据header当前的偏移值调整它的滑动位置
+     */
+    private void syncPage(int position) {
+        if (!mDirtyPages.get(position))
+            return;
+        mDirtyPages.delete(position);
+        IStickyView page = mPages.get(position);
+        if (page != null) {
+            adjustPage(page, getHeaderTranslationY());
+        }
+    }
+
+    /**
+     * 调整页面的滑动位置，并记录花费的时间
+     */
+    private void adjustPage(IStickyView page, int translationY) {
+        StickyTrace.beginSection("StickyCoordinator#syncPage");
+        try {
+            if (StickyMetrics.isEnabled()) {
+                long start = System.nanoTime();
+                page.adjustPositionByTranslationYOfStickyView(translationY);
+                StickyMetrics.recordPageSync(System.nanoTime() - start);
+            } else {
+                page.adjustPositionByTranslationYOfStickyView(translationY);
+            }
+        } finally {
+            StickyTrace.endSection();
+        }
+    }
+
+    /**
+     * 页面第一次露出来时立即调整，放到下一帧的话它会以旧的滑动位置先绘制一帧；调整后不再是dirty，之后的回调不会重复调整
+     */
+    @Override
+    public void onPageScrolled(int position, float positionOffset, int positionOffsetPixels) {
+        if (mDirtyPages.size() == 0)
+            return;
+        // position和position + 1两个页面此时可能在屏幕上
+        syncPage(position);
+        if (positionOffsetPixels > 0) {
+            syncPage(position + 1);
+        }
+    }
+
+    @Override
+    public void onPageSelected(int position) {
+        mCurrentItem = position;
+        // 原来页面的滑动状态不会再分发过来
+        demoteHeaderLayer();
+        IStickyView page = mPages.get(position);
+        if (page == null)
+            return;
+        syncPage(position);
+        int st = page.getScrollTop();
+        int tranY = Math.abs(getHeaderTranslationY());
+        if (tranY > st) {
+            st = Math.min(st, mStickyViewTop);
+            setHeaderTranslationY(-st);
+            adjustPage(page, -st);
+        }
+    }
+
+    @Override
+    public void onPageScrollStateChanged(int state) {
+        if (state == ViewPager.SCROLL_STATE_DRAGGING) {
+            syncPagesWithHeader(getCurrentItem());
+        }
+    }
+
+    @Override
+    public void onScrollChanged(int translationY) {
+        setHeaderTranslationY(translationY);
+    }
+
+    @Override
+    public void onScrollStateChanged(int state) {
+        if (!mHardwareLayerEnabled)
+            return;
+        if (state == SCROLL_STATE_IDLE) {
+            demoteHeaderLayer();
+        } else {
+            promoteHeaderLayer();
+        }
+    }
+
+    @Override
+    public int getCurrentItem() {
+        if (mViewPager != null)
+            return mViewPager.getCurrentItem();
+        return mCurrentItem;
+    }
+
+    @Override
+    public int getHeaderViewHeight() {
+        return mHeaderHeight;
+    }
+
+    @Override
+    public int getStickyViewTop() {
+        return mStickyViewTop;
+    }
+}
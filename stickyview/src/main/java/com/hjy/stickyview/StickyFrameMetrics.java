@@ -0,0 +1,64 @@
+package com.hjy.stickyview;
+
+/**
+ * 一帧内sticky相关逻辑的统计数据
+ */
+public class StickyFrameMetrics {
+
+    /**
+     * 这一帧的Choreographer时间
+     */
+    public long frameTimeNanos;
+
+    /**
+     * IStickyView收到的滑动事件次数
+     */
+    public int scrollEvents;
+
+    /**
+     * StickyScrollCallback.onScrollChanged()的调用次数
+     */
+    public int scrollChangedCalls;
+
+    /**
+     * 在StickyScrollCallback.onScrollChanged()里花费的时间
+     */
+    public long scrollCallbackNanos;
+
+    /**
+     * StickyCoordinator调整其它页面滑动位置的次数
+     */
+    public int pageSyncs;
+
+    /**
+     * 调整其它页面滑动位置花费的时间
+     */
+    public long pageSyncNanos;
+
+    void reset() {
+        frameTimeNanos = 0;
+        scrollEvents = 0;
+        scrollChangedCalls = 0;
+        scrollCallbackNanos = 0;
+        pageSyncs = 0;
+        pageSyncNanos = 0;
+    }
+
+    public void copyFrom(StickyFrameMetrics other) {
+        frameTimeNanos = other.frameTimeNanos;
+        scrollEvents = other.scrollEvents;
+        scrollChangedCalls = other.scrollChangedCalls;
+        scrollCallbackNanos = other.scrollCallbackNanos;
+        pageSyncs = other.pageSyncs;
+        pageSyncNanos = other.pageSyncNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "StickyFrameMetrics{scrollEvents=" + scrollEvents
+                + ", scrollChangedCalls=" + scrollChangedCalls
+                + ", scrollCallbackNanos=" + scrollCallbackNanos
+                + ", pageSyncs=" + pageSyncs
+                + ", pageSyncNanos=" + pageSyncNanos + "}";
+    }
+}
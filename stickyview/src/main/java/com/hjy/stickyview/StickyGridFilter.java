@@ -0,0 +1,196 @@
+package com.hjy.stickyview;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Message;
+import android.widget.Filter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * StickyGridView的分批筛选，通过StickyGridView.setChunkedFilter()设置后，Adapter的getFilter()返回它<br>
+ * 在Filter的工作线程里遍历数据，每找到chunkSize个结果就发送到主线程：第一批替换原来的数据，之后的批次通过notifyItemsAppended()追加，
+ * 已经记录的行高不会被清除；替换时保持第一个可见行的位置和滑动距离，因此header的偏移也保持不变<br>
+ * Filter会合并还没有开始的请求，新的筛选开始后，旧筛选还没有发送到Adapter的批次会被丢弃<br>
+ * Filter.filter()是final的，通过submit()开始筛选时会在主线程立即取消正在进行的筛选，工作线程里的遍历也会提前结束；
+ * 直接调用filter()时只能在新的筛选开始遍历时丢弃旧的批次
+ *
+ * @param <T> 数据类型
+ */
+public class StickyGridFilter<T> extends Filter {
+
+    /**
+     * 默认每批发送的结果个数
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 500;
+
+    public interface Callback<T> {
+
+        /**
+         * 在后台线程调用，不能访问View
+         *
+         * @param item       数据
+         * @param constraint 筛选条件
+         * @return 是否保留
+         */
+        boolean matches(T item, CharSequence constraint);
+
+        /**
+         * 在主线程调用，清空Adapter里的数据，不需要调用notifyDataSetChanged()
+         */
+        void onResultsCleared();
+
+        /**
+         * 在主线程调用，把结果追加到Adapter的数据末尾，不需要调用notifyDataSetChanged()
+         *
+         * @param results 这一批的结果
+         */
+        void onResultsAppended(List<T> results);
+    }
+
+    private final StickyGridView mGridView;
+    private final Callback<T> mCallback;
+    private final int mChunkSize;
+
+    private final Handler mMainHandler;
+
+    /**
+     * 筛选的数据源，只在主线程替换，后台线程只读
+     */
+    private volatile Object[] mSource = new Object[0];
+
+    /**
+     * 在主线程提交新的筛选(cancel())时加1，工作线程的遍历和主线程都丢弃旧的批次
+     */
+    private final AtomicInteger mGeneration = new AtomicInteger();
+
+    /**
+     * 上一次performFiltering()使用的generation，只在Filter的工作线程访问
+     */
+    private int mLastFilteringGeneration = -1;
+
+    private static class Chunk {
+        int generation;
+        ArrayList<Object> results;
+        boolean first;
+    }
+
+    public StickyGridFilter(StickyGridView gridView, Callback<T> callback) {
+        this(gridView, callback, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @param gridView  显示结果的StickyGridView
+     * @param callback  匹配数据以及修改Adapter里的数据
+     * @param chunkSize 每批发送的结果个数
+     */
+    public StickyGridFilter(StickyGridView gridView, Callback<T> callback, int chunkSize) {
+        if (chunkSize <= 0)
+            throw new IllegalArgumentException("chunkSize must be > 0");
+        mGridView = gridView;
+        mCallback = callback;
+        mChunkSize = chunkSize;
+        mMainHandler = new Handler(Looper.getMainLooper(), new Handler.Callback() {
+            @Override
+            public boolean handleMessage(Message msg) {
+                publishChunk((Chunk) msg.obj);
+                return true;
+            }
+        });
+    }
+
+    /**
+     * 设置筛选的全部数据，会复制一份，之后修改items不影响筛选
+     */
+    public void setSource(List<? extends T> items) {
+        mSource = items.toArray();
+    }
+
+    /**
+     * 丢弃正在进行的筛选还没有发送到Adapter的批次，已经发送的结果保留
+     */
+    public void cancel() {
+        mGeneration.incrementAndGet();
+        mMainHandler.removeCallbacksAndMessages(null);
+    }
+
+    /**
+     * 在主线程调用，取消正在进行的筛选后再开始新的筛选，代替filter()
+     *
+     * @param constraint 筛选条件
+     */
+    public void submit(CharSequence constraint) {
+        cancel();
+        filter(constraint);
+    }
+
+    /**
+     * 在Filter的工作线程里调用，除最后一批以外的结果直接发送到主线程，最后一批作为FilterResults返回，
+     * 由publishResults()在之前的批次之后处理
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    protected FilterResults performFiltering(CharSequence constraint) {
+        int generation = mGeneration.get();
+        // 没有通过submit()提交(直接调用了filter())，在这里开始新的generation
+        if (generation == mLastFilteringGeneration)
+            generation = mGeneration.incrementAndGet();
+        mLastFilteringGeneration = generation;
+        Object[] source = mSource;
+        boolean first = true;
+        int totalCount = 0;
+        ArrayList<Object> results = new ArrayList<Object>(mChunkSize);
+        for (int i = 0; i < source.length; i++) {
+            if (generation != mGeneration.get())
+                break;
+            if (mCallback.matches((T) source[i], constraint)) {
+                results.add(source[i]);
+                if (results.size() == mChunkSize) {
+                    totalCount += results.size();
+                    mMainHandler.obtainMessage(0, newChunk(generation, results, first)).sendToTarget();
+                    first = false;
+                    results = new ArrayList<Object>(mChunkSize);
+                }
+            }
+        }
+        totalCount += results.size();
+        FilterResults filterResults = new FilterResults();
+        filterResults.values = newChunk(generation, results, first);
+        filterResults.count = totalCount;
+        return filterResults;
+    }
+
+    private static Chunk newChunk(int generation, ArrayList<Object> results, boolean first) {
+        Chunk chunk = new Chunk();
+        chunk.generation = generation;
+        chunk.results = results;
+        chunk.first = first;
+        return chunk;
+    }
+
+    @Override
+    protected void publishResults(CharSequence constraint, FilterResults results) {
+        publishChunk((Chunk) results.values);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void publishChunk(Chunk chunk) {
+        if (chunk.generation != mGeneration.get())
+            return;
+        StickyTrace.beginSection("StickyGridFilter#publish");
+        try {
+            if (chunk.first) {
+                mCallback.onResultsCleared();
+                mCallback.onResultsAppended((List<T>) (List<?>) chunk.results);
+                mGridView.onFilterResultsReplaced();
+            } else if (!chunk.results.isEmpty()) {
+                mCallback.onResultsAppended((List<T>) (List<?>) chunk.results);
+                mGridView.onFilterResultsAppended(chunk.results.size());
+            }
+        } finally {
+            StickyTrace.endSection();
+        }
+    }
+}
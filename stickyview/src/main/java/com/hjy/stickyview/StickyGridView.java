@@ -22,14 +22,16 @@ package com.hjy.stickyview;
 import android.annotation.TargetApi;
 import android.content.Context;
 import android.database.DataSetObservable;
+import android.graphics.Canvas;
 import android.database.DataSetObserver;
 import android.os.Build;
 import android.util.AttributeSet;
-import android.util.Log;
+import android.util.SparseArray;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.AbsListView;
 import android.widget.AdapterView;
+import android.widget.BaseAdapter;
 import android.widget.Filter;
 import android.widget.Filterable;
 import android.widget.FrameLayout;
@@ -37,6 +39,10 @@ import android.widget.GridView;
 import android.widget.ListAdapter;
 import android.widget.WrapperListAdapter;
 
+import com.hjy.stickyview.core.GridSegmentTable;
+import com.hjy.stickyview.core.ItemHeightIndex;
+import com.hjy.stickyview.core.StickyGeometry;
+
 import java.lang.reflect.Field;
 import java.util.ArrayList;
 
@@ -48,6 +54,19 @@ import java.util.ArrayList;
 public class StickyGridView extends GridView implements IStickyView {
     private static final String TAG = "HeaderGridView";
 
+    /**
+     * 分页加载的回调
+     */
+    public interface OnLoadMoreListener {
+
+        /**
+         * 请求下一页数据，加载完成后把数据追加到adapter末尾，再调用notifyItemsAppended()
+         *
+         * @param gridView 需要加载的StickyGridView
+         */
+        void onLoadMore(StickyGridView gridView);
+    }
+
     /**
      * A class that represents a fixed view in a list, for example a header at the top
      * or a footer at the bottom.
@@ -68,14 +87,105 @@ public class StickyGridView extends GridView implements IStickyView {
         public boolean isSelectable;
     }
 
+    /**
+     * header、footer所在行以及最后一行数据里的空白占位View池，按类型和所在的格子缓存。<br>
+     * 每个格子同一时间只会出现一次，因此同一个格子始终复用同一个PlaceholderView，滑动过程中不会再创建新的View
+     */
+    private static final class PlaceholderPool {
+        static final int TYPE_HEADER = 0;
+        static final int TYPE_ADAPTER = 1;
+        static final int TYPE_FOOTER = 2;
+
+        @SuppressWarnings("unchecked")
+        private final ArrayList<PlaceholderView>[] mPools = new ArrayList[] {
+                new ArrayList<PlaceholderView>(), new ArrayList<PlaceholderView>(), new ArrayList<PlaceholderView>()
+        };
+
+        private int mAllocationCount;
+
+        PlaceholderView obtain(int type, int slot, Context context) {
+            ArrayList<PlaceholderView> pool = mPools[type];
+            while (pool.size() <= slot) {
+                pool.add(null);
+            }
+            PlaceholderView view = pool.get(slot);
+            if (view == null) {
+                view = new PlaceholderView(context);
+                mAllocationCount++;
+                pool.set(slot, view);
+            }
+            return view;
+        }
+
+        int getAllocationCount() {
+            return mAllocationCount;
+        }
+    }
+
+    private final PlaceholderPool mPlaceholderPool = new PlaceholderPool();
+
     private ArrayList<FixedViewInfo> mHeaderViewInfos = new ArrayList<FixedViewInfo>();
     private ArrayList<FixedViewInfo> mFooterViewInfos = new ArrayList<FixedViewInfo>();
     private ListAdapter mOriginalAdapter;
 
-    private View mViewForMeasureRowHeight = null;
-    private int mRowHeight = -1;
+    private StickyItemPrefetcher mItemPrefetcher;
+
+    private StickyGridFilter<?> mChunkedFilter;
+
+    /**
+     * Adapter有stable id时，数据变化后按id恢复第一个可见的数据行
+     */
+    private final StableIdAnchor mStableIdAnchor = new StableIdAnchor();
+
+    /**
+     * 分页加载的footer，距离最后一行数据不超过mPagingPrefetchRows行时请求下一页
+     */
+    private View mPagingFooter;
+    private int mPagingPrefetchRows;
+    private OnLoadMoreListener mOnLoadMoreListener;
+    private boolean mHasMoreItems = true;
+    private boolean mLoadingMore;
+
+    /**
+     * notifyItemsAppended()通知AbsListView时为true，此时已经记录的行高不需要重新计算
+     */
+    private boolean mAppendingItems;
+
+    private final Runnable mLoadMoreRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (mOnLoadMoreListener != null)
+                mOnLoadMoreListener.onLoadMore(StickyGridView.this);
+        }
+    };
+
+    /**
+     * 测量行高使用的View，按view type分别缓存，作为对应类型item的convertView
+     */
+    private final SparseArray<View> mViewsForMeasureRowHeight = new SparseArray<View>();
     private int mNumColumns = AUTO_FIT;
 
+    /**
+     * 记录每一行的高度(包含verticalSpacing)，用于计算任意位置下的滑动距离
+     */
+    private final ItemHeightIndex mRowHeightIndex = new ItemHeightIndex();
+    private ListAdapter mObservedAdapter;
+
+    /**
+     * 头部占位View，以及它所在的行
+     */
+    private View mHeadPlaceHolder;
+    private int mHeadPlaceHolderRow;
+
+    private final PinnedSectionDrawer mPinnedSectionDrawer = new PinnedSectionDrawer(this);
+
+    /**
+     * 等待setAdapter()之后恢复的滑动位置
+     */
+    private int mPendingAnchorPosition = INVALID_POSITION;
+    private int mPendingAnchorOffset;
+    private int mPendingScrollTop;
+
     private OnItemClickListener mOnItemClickListener;
     private OnItemLongClickListener mOnItemLongClickListener;
     private ItemClickHandler mItemClickHandler;
@@ -87,6 +197,8 @@ public class StickyGridView extends GridView implements IStickyView {
      */
     private int mPagePosition;
 
+    private final StickyScrollDispatcher mScrollDispatcher = new StickyScrollDispatcher(this);
+
     private OnScrollListener mDelegate;
 
     public StickyGridView(Context context) {
@@ -113,7 +225,6 @@ public class StickyGridView extends GridView implements IStickyView {
         ListAdapter adapter = getAdapter();
         if (adapter != null && adapter instanceof HeaderViewGridAdapter) {
             ((HeaderViewGridAdapter) adapter).setNumColumns(getNumColumns());
-            ((HeaderViewGridAdapter) adapter).setRowHeight(getRowHeight());
         }
     }
 
@@ -243,14 +354,36 @@ public class StickyGridView extends GridView implements IStickyView {
         }
     }
 
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        mScrollDispatcher.onAttachedToWindow();
+    }
+
     @Override
     protected void onDetachedFromWindow() {
         super.onDetachedFromWindow();
-        mViewForMeasureRowHeight = null;
+        mScrollDispatcher.onDetachedFromWindow();
+        mViewsForMeasureRowHeight.clear();
     }
 
+    /**
+     * 清除所有行已记录的高度
+     */
     public void invalidateRowHeight() {
-        mRowHeight = -1;
+        mRowHeightIndex.reset(mRowHeightIndex.size());
+    }
+
+    /**
+     * 清除某个item所在行已记录的高度，item内容变化导致高度改变时调用
+     *
+     * @param position 原始adapter里的position
+     */
+    public void invalidateRowHeight(int position) {
+        int numColumns = getNumColumnsCompatible();
+        if (numColumns <= 0)
+            return;
+        mRowHeightIndex.invalidate(mHeaderViewInfos.size() + position / numColumns);
     }
 
     @TargetApi(11)
@@ -287,30 +420,201 @@ public class StickyGridView extends GridView implements IStickyView {
         }
     }
 
+    /**
+     * 获取第一行数据的高度
+     *
+     * @return 行高，没有数据时返回-1
+     */
     public int getRowHeight() {
-        if (mRowHeight > 0) {
-            return mRowHeight;
-        }
         ListAdapter adapter = getAdapter();
         int numColumns = getNumColumnsCompatible();
 
         // adapter has not been set or has no views in it;
-        if (adapter == null || adapter.getCount() <= numColumns * (mHeaderViewInfos.size() + mFooterViewInfos.size())) {
+        if (adapter == null || numColumns <= 0 || adapter.getCount() <= numColumns * (mHeaderViewInfos.size() + mFooterViewInfos.size())) {
             return -1;
         }
-        int mColumnWidth = getColumnWidthCompatible();
-        View view = adapter.getView(numColumns * mHeaderViewInfos.size(), mViewForMeasureRowHeight, this);
-        LayoutParams p = (LayoutParams) view.getLayoutParams();
-        if (p == null) {
-            p = new LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT, 0);
-            view.setLayoutParams(p);
+        return getRowHeight(mHeaderViewInfos.size());
+    }
+
+    /**
+     * 获取某一行的高度(不包含verticalSpacing)，优先使用布局时记录的高度，没有记录时才测量该行的item
+     *
+     * @param row 行号，包含header所在的行
+     * @return 行高，无法获取时返回-1
+     */
+    private int getRowHeight(int row) {
+        StickyTrace.beginSection("StickyGridView#getRowHeight");
+        try {
+            return getRowHeightInternal(row);
+        } finally {
+            StickyTrace.endSection();
+        }
+    }
+
+    private int getRowHeightInternal(int row) {
+        int rowHeight = mRowHeightIndex.getHeight(row);
+        if (rowHeight >= 0) {
+            return Math.max(0, rowHeight - getVerticalSpacing());
+        }
+        // 直接使用原始Adapter测量，不经过header、预取的包装，不会取走已经预取的View
+        ListAdapter adapter = mOriginalAdapter;
+        int numColumns = getNumColumnsCompatible();
+        if (adapter == null || numColumns <= 0) {
+            return -1;
         }
-        int childHeightSpec = getChildMeasureSpec(MeasureSpec.makeMeasureSpec(0, MeasureSpec.UNSPECIFIED), 0, p.height);
-        int childWidthSpec = getChildMeasureSpec(MeasureSpec.makeMeasureSpec(mColumnWidth, MeasureSpec.EXACTLY), 0, p.width);
-        view.measure(childWidthSpec, childHeightSpec);
-        mViewForMeasureRowHeight = view;
-        mRowHeight = view.getMeasuredHeight();
-        return mRowHeight;
+        int adapterStart = numColumns * mHeaderViewInfos.size();
+        int start = Math.max(row * numColumns, adapterStart);
+        int end = Math.min((row + 1) * numColumns, adapterStart + adapter.getCount());
+        if (start >= end) {
+            return -1;
+        }
+        int columnWidth = getColumnWidthCompatible();
+        int maxHeight = 0;
+        for (int position = start; position < end; position++) {
+            int viewType = adapter.getItemViewType(position - adapterStart);
+            // 只复用同一个view type的View，IGNORE类型的item每次都创建新的View
+            View convertView = viewType != ITEM_VIEW_TYPE_IGNORE ? mViewsForMeasureRowHeight.get(viewType) : null;
+            View view = adapter.getView(position - adapterStart, convertView, this);
+            LayoutParams p = (LayoutParams) view.getLayoutParams();
+            if (p == null) {
+                p = new LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT, 0);
+                view.setLayoutParams(p);
+            }
+            int childHeightSpec = getChildMeasureSpec(MeasureSpec.makeMeasureSpec(0, MeasureSpec.UNSPECIFIED), 0, p.height);
+            int childWidthSpec = getChildMeasureSpec(MeasureSpec.makeMeasureSpec(columnWidth, MeasureSpec.EXACTLY), 0, p.width);
+            view.measure(childWidthSpec, childHeightSpec);
+            if (viewType != ITEM_VIEW_TYPE_IGNORE)
+                mViewsForMeasureRowHeight.put(viewType, view);
+            maxHeight = Math.max(maxHeight, view.getMeasuredHeight());
+        }
+        mRowHeightIndex.setHeight(row, maxHeight + getVerticalSpacing());
+        return maxHeight;
+    }
+
+    private final RowHeightLookup mRowHeightLookup = new RowHeightLookup() {
+        @Override
+        public int getRowHeight(int row) {
+            return StickyGridView.this.getRowHeight(row);
+        }
+    };
+
+    /**
+     * 记录当前已布局的每一行的高度，相邻两行的top之差即包含了verticalSpacing
+     */
+    private void recordRowHeights(int firstVisibleItem, int totalItemCount) {
+        int numColumns = getNumColumnsCompatible();
+        if (numColumns <= 0)
+            return;
+        int rowCount = (totalItemCount + numColumns - 1) / numColumns;
+        if (mRowHeightIndex.size() != rowCount)
+            mRowHeightIndex.resize(rowCount);
+        int firstRow = firstVisibleItem / numColumns;
+        int childCount = getChildCount();
+        for (int i = 0; i < childCount; i += numColumns) {
+            View child = getChildAt(i);
+            int height;
+            if (i + numColumns < childCount) {
+                height = getChildAt(i + numColumns).getTop() - child.getTop();
+            } else {
+                int end = Math.min(i + numColumns, childCount);
+                int maxHeight = 0;
+                for (int j = i; j < end; j++) {
+                    maxHeight = Math.max(maxHeight, getChildAt(j).getHeight());
+                }
+                height = maxHeight + getVerticalSpacing();
+            }
+            mRowHeightIndex.setHeight(firstRow + i / numColumns, height);
+        }
+    }
+
+    /**
+     * 数据变化后清除数据行已记录的行高，数据可能被重新排序、删除或者替换，第一个可见行之前的行不会重新布局，不能继续使用旧的行高<br>
+     * 只保留header所在的行以及当前已经布局的行：前者不受数据影响，后者在下一次布局后由recordRowHeights()重新记录<br>
+     * 只有部分item的高度变化时，可以改为调用invalidateRowHeight(int)
+     */
+    private void resetDataRowHeights() {
+        int numColumns = getNumColumnsCompatible();
+        if (numColumns <= 0) {
+            mRowHeightIndex.reset(0);
+            return;
+        }
+        int rowCount = (mObservedAdapter.getCount() + numColumns - 1) / numColumns;
+        int headerRows = Math.min(mHeaderViewInfos.size(), mRowHeightIndex.size());
+        int firstRow = getFirstVisiblePosition() / numColumns;
+        int laidOutRows = Math.max(0, Math.min((getChildCount() + numColumns - 1) / numColumns, mRowHeightIndex.size() - firstRow));
+        int[] heights = new int[headerRows + laidOutRows];
+        for (int i = 0; i < headerRows; i++) {
+            heights[i] = mRowHeightIndex.getHeight(i);
+        }
+        for (int i = 0; i < laidOutRows; i++) {
+            heights[headerRows + i] = mRowHeightIndex.getHeight(firstRow + i);
+        }
+        mRowHeightIndex.reset(rowCount);
+        for (int i = 0; i < headerRows; i++) {
+            if (heights[i] >= 0)
+                mRowHeightIndex.setHeight(i, heights[i]);
+        }
+        for (int i = 0; i < laidOutRows; i++) {
+            if (heights[headerRows + i] >= 0)
+                mRowHeightIndex.setHeight(firstRow + i, heights[headerRows + i]);
+        }
+    }
+
+    /**
+     * header所在的行已经滑出屏幕时，记录第一个可见数据行第一个item的id，它在数据变化后的位置由layoutChildren()修正
+     */
+    private void recordStableIdAnchor(int firstVisibleItem) {
+        View firstView = getChildAt(0);
+        ListAdapter adapter = getAdapter();
+        if (firstView == null || adapter == null || firstVisibleItem < getDataStart() || firstVisibleItem >= getDataEnd()) {
+            mStableIdAnchor.clearAnchor();
+            return;
+        }
+        mStableIdAnchor.record(adapter, firstVisibleItem, firstView.getTop(), getFirstViewScrollTop());
+    }
+
+    /**
+     * adapter数据在GridView里的起始position(包含)
+     */
+    private int getDataStart() {
+        ListAdapter adapter = getAdapter();
+        if (adapter instanceof HeaderViewGridAdapter)
+            return ((HeaderViewGridAdapter) adapter).mSegmentTable.headerEnd;
+        return 0;
+    }
+
+    /**
+     * adapter数据在GridView里的结束position(不包含)
+     */
+    private int getDataEnd() {
+        ListAdapter adapter = getAdapter();
+        if (adapter instanceof HeaderViewGridAdapter)
+            return ((HeaderViewGridAdapter) adapter).mSegmentTable.adapterEnd;
+        return adapter != null ? adapter.getCount() : 0;
+    }
+
+    /**
+     * 数据变化后AbsListView只按原来的position同步，在它处理数据变化之前把同步的位置换成锚点item所在行的新位置，
+     * 在同一次布局里完成，锚点之前的行按记录的scrollTop估算高度，header的偏移保持不变<br>
+     * API 21以下GridView没有setSelectionFromTop()，仍然按position同步
+     */
+    @Override
+    protected void layoutChildren() {
+        if (mStableIdAnchor.needsResync() && getAdapter() != null) {
+            int position = mStableIdAnchor.findResyncPosition(getAdapter(), getDataStart(), getDataEnd());
+            int numColumns = getNumColumnsCompatible();
+            if (position != INVALID_POSITION && numColumns > 0 && Build.VERSION.SDK_INT >= 21) {
+                int row = position / numColumns;
+                int rowCount = (getAdapter().getCount() + numColumns - 1) / numColumns;
+                if (mRowHeightIndex.size() != rowCount)
+                    mRowHeightIndex.resize(rowCount);
+                int top = mStableIdAnchor.getAnchorTop();
+                mRowHeightIndex.distributeHeight(0, row, mStableIdAnchor.getScrollTop() + top);
+                // 布局过程中requestLayout()会被忽略，这里只修改同步的position和偏移
+                setSelectionFromTop(row * numColumns, top - getListPaddingTop());
+            }
+        }
+        super.layoutChildren();
     }
 
     @Override
@@ -325,24 +629,261 @@ public class StickyGridView extends GridView implements IStickyView {
 
     @Override
     public void setAdapter(ListAdapter adapter) {
+        checkChunkedFilterAdapter(mChunkedFilter, adapter);
+        if (mObservedAdapter != null) {
+            mObservedAdapter.unregisterDataSetObserver(mDataSetObserver);
+            mObservedAdapter = null;
+        }
         mOriginalAdapter = adapter;
+        mViewsForMeasureRowHeight.clear();
+        mRowHeightIndex.reset(0);
+        mStableIdAnchor.onInvalidated();
+        mPinnedSectionDrawer.invalidate();
+        if (mItemPrefetcher != null) {
+            adapter = mItemPrefetcher.wrap(adapter);
+        }
         if (mHeaderViewInfos.size() > 0 || mFooterViewInfos.size() > 0) {
-            HeaderViewGridAdapter hadapter = new HeaderViewGridAdapter(mHeaderViewInfos, mFooterViewInfos, adapter);
+            HeaderViewGridAdapter hadapter = new HeaderViewGridAdapter(mHeaderViewInfos, mFooterViewInfos, adapter, mPlaceholderPool);
             int numColumns = getNumColumnsCompatible();
             if (numColumns > 1) {
                 hadapter.setNumColumns(numColumns);
             }
-            hadapter.setRowHeight(getRowHeight());
+            hadapter.setRowHeightLookup(mRowHeightLookup);
+            hadapter.setChunkedFilter(mChunkedFilter);
             super.setAdapter(hadapter);
         } else {
             super.setAdapter(adapter);
         }
+        mObservedAdapter = getAdapter();
+        if (mObservedAdapter != null) {
+            mObservedAdapter.registerDataSetObserver(mDataSetObserver);
+            if (mPendingAnchorPosition != INVALID_POSITION)
+                applyPendingScrollPosition();
+        }
+    }
+
+    private DataSetObserver mDataSetObserver = new DataSetObserver() {
+        @Override
+        public void onChanged() {
+            // 追加数据时notifyItemsAppended()已经更新了行高
+            if (mAppendingItems)
+                return;
+            mStableIdAnchor.onDataChanged();
+            resetDataRowHeights();
+            mPinnedSectionDrawer.invalidate();
+        }
+
+        @Override
+        public void onInvalidated() {
+            mRowHeightIndex.reset(0);
+            mStableIdAnchor.onInvalidated();
+            mPinnedSectionDrawer.invalidate();
+        }
+    };
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        if (w != oldw)
+            mPinnedSectionDrawer.invalidate();
+    }
+
+    /**
+     * Adapter实现了PinnedSectionAdapter时，在子View之上绘制当前分组的固定header
+     */
+    @Override
+    protected void dispatchDraw(Canvas canvas) {
+        super.dispatchDraw(canvas);
+        if (mOriginalAdapter instanceof PinnedSectionAdapter) {
+            int headerCount = mHeaderViewInfos.size() * Math.max(1, getNumColumnsCompatible());
+            mPinnedSectionDrawer.draw(canvas, (PinnedSectionAdapter) mOriginalAdapter, headerCount, PinnedSectionDrawer.getPinnedTop(this));
+        }
+    }
+
+    /**
+     * 在主线程空闲时按滑动方向预取item，必须在setAdapter()之前调用
+     *
+     * @param count 每次最少预取的item个数，一般为列数的整数倍，小于等于0时关闭
+     */
+    public void setItemPrefetchCount(int count) {
+        mItemPrefetcher = count > 0 ? new StickyItemPrefetcher(this, count) : null;
+    }
+
+    /**
+     * @return 未开启预取时返回null，可以通过它查看命中率
+     */
+    public StickyItemPrefetcher getItemPrefetcher() {
+        return mItemPrefetcher;
+    }
+
+    /**
+     * 添加分页加载的footer，滑动到距离最后一行数据不超过prefetchRows行时回调OnLoadMoreListener，必须在setAdapter()之前调用<br>
+     * 加载完成后把数据追加到adapter末尾，调用notifyItemsAppended()代替notifyDataSetChanged()，已经记录的行高不会被清除
+     *
+     * @param footerView   加载中显示的footer
+     * @param prefetchRows 提前多少行开始加载
+     * @param listener     加载回调
+     */
+    public void setPagingFooter(View footerView, int prefetchRows, OnLoadMoreListener listener) {
+        if (mPagingFooter != null)
+            removeFooterView(mPagingFooter);
+        mPagingFooter = footerView;
+        mPagingPrefetchRows = Math.max(0, prefetchRows);
+        mOnLoadMoreListener = listener;
+        if (footerView != null) {
+            addFooterView(footerView, null, false);
+            footerView.setVisibility(mHasMoreItems ? VISIBLE : GONE);
+        }
+    }
+
+    /**
+     * 设置是否还有下一页，没有时隐藏分页footer，不再回调OnLoadMoreListener
+     */
+    public void setHasMoreItems(boolean hasMore) {
+        mHasMoreItems = hasMore;
+        if (mPagingFooter != null)
+            mPagingFooter.setVisibility(hasMore ? VISIBLE : GONE);
+    }
+
+    public boolean isLoadingMore() {
+        return mLoadingMore;
+    }
+
+    private void checkLoadMore(int firstVisibleItem, int visibleItemCount) {
+        if (mOnLoadMoreListener == null || mLoadingMore || !mHasMoreItems || visibleItemCount == 0)
+            return;
+        ListAdapter adapter = getAdapter();
+        if (!(adapter instanceof HeaderViewGridAdapter))
+            return;
+        GridSegmentTable table = ((HeaderViewGridAdapter) adapter).mSegmentTable;
+        int lastVisibleRow = table.rowOf(firstVisibleItem + visibleItemCount - 1);
+        int lastDataRow = table.rowOf(table.placeholderEnd - 1);
+        if (lastDataRow - lastVisibleRow > mPagingPrefetchRows)
+            return;
+        mLoadingMore = true;
+        // onScroll()可能在布局过程中回调，不能在这里直接修改数据
+        post(mLoadMoreRunnable);
+    }
+
+    /**
+     * adapter末尾追加了count个item，只扩展header、footer的position映射，已经记录的行高保持不变，
+     * 只有原来最后一行没有填满时清除这一行的行高<br>
+     * 同时结束这一次分页加载，加载失败时也需要调用(count为0)，下一次滑动时会重新请求<br>
+     * 只通知GridView自己(包括置顶的section和按id定位的索引)，adapter上注册的其它observer不会收到onChanged()，
+     * 它们需要知道数据变化时由调用方自己通知；预取器不需要通知，已经预取的position在追加后不变<br>
+     * 没有header、footer时adapter没有被包装，仍然需要调用adapter的notifyDataSetChanged()
+     *
+     * @param count 追加的item个数
+     */
+    public void notifyItemsAppended(int count) {
+        mLoadingMore = false;
+        appendItems(count);
+    }
+
+    private void appendItems(int count) {
+        ListAdapter adapter = getAdapter();
+        if (count <= 0 || !(adapter instanceof HeaderViewGridAdapter))
+            return;
+        HeaderViewGridAdapter hadapter = (HeaderViewGridAdapter) adapter;
+        GridSegmentTable oldTable = hadapter.mSegmentTable;
+        GridSegmentTable newTable = oldTable.appendAdapterItems(count);
+        int numColumns = oldTable.numColumns;
+        int oldDataRowEnd = oldTable.placeholderEnd / numColumns;
+        if (mRowHeightIndex.size() == oldTable.getRowCount()) {
+            if (oldTable.adapterEnd % numColumns != 0)
+                mRowHeightIndex.invalidate(oldDataRowEnd - 1);
+            // footer所在的行整体后移
+            mRowHeightIndex.insert(oldDataRowEnd, newTable.placeholderEnd / numColumns - oldDataRowEnd);
+        } else {
+            mRowHeightIndex.resize(newTable.getRowCount());
+        }
+        mAppendingItems = true;
+        try {
+            hadapter.notifyItemsAppended(newTable);
+        } finally {
+            mAppendingItems = false;
+        }
+        mStableIdAnchor.onItemsAppended(hadapter, oldTable.adapterEnd, newTable.adapterEnd);
+        // 追加的数据里可能有新的section
+        mPinnedSectionDrawer.invalidate();
+    }
+
+    /**
+     * 设置分批筛选，之后Adapter的getFilter()返回该filter，原始Adapter必须是BaseAdapter
+     *
+     * @param filter 为null时恢复使用原始Adapter的Filter
+     * @throws IllegalStateException 已经设置的Adapter不是BaseAdapter
+     */
+    public void setChunkedFilter(StickyGridFilter<?> filter) {
+        checkChunkedFilterAdapter(filter, mOriginalAdapter);
+        mChunkedFilter = filter;
+        ListAdapter adapter = getAdapter();
+        if (adapter instanceof HeaderViewGridAdapter)
+            ((HeaderViewGridAdapter) adapter).setChunkedFilter(filter);
+    }
+
+    /**
+     * 分批筛选需要通过BaseAdapter.notifyDataSetChanged()通知数据变化，在设置时检查，而不是等到第一批结果返回
+     */
+    private static void checkChunkedFilterAdapter(StickyGridFilter<?> filter, ListAdapter adapter) {
+        if (filter != null && adapter != null && !(adapter instanceof BaseAdapter))
+            throw new IllegalStateException("StickyGridFilter requires the adapter to be a BaseAdapter");
+    }
+
+    /**
+     * 筛选结果替换了全部数据，保持第一个可见行的位置、偏移以及getScrollTop()不变，header的偏移也就不会变化
+     */
+    void onFilterResultsReplaced() {
+        if (mOriginalAdapter == null)
+            return;
+        View firstChild = getChildAt(0);
+        int anchorPosition = getFirstVisiblePosition();
+        int anchorOffset = firstChild != null ? firstChild.getTop() : 0;
+        int scrollTop = getScrollTop();
+        ((BaseAdapter) mOriginalAdapter).notifyDataSetChanged();
+        ListAdapter adapter = getAdapter();
+        int numColumns = getNumColumnsCompatible();
+        if (firstChild == null || adapter == null || numColumns <= 0)
+            return;
+        int count = adapter.getCount();
+        if (anchorPosition >= count) {
+            // 结果变少，原来的行已经不存在，只能停在最后一行
+            anchorPosition = Math.max(0, count - 1);
+        }
+        restoreScrollPosition(anchorPosition - anchorPosition % numColumns, anchorOffset, scrollTop);
+    }
+
+    /**
+     * 筛选结果的后续批次追加到末尾，和分页加载一样只扩展position映射
+     */
+    void onFilterResultsAppended(int count) {
+        if (getAdapter() instanceof HeaderViewGridAdapter) {
+            appendItems(count);
+        } else if (mOriginalAdapter instanceof BaseAdapter) {
+            ((BaseAdapter) mOriginalAdapter).notifyDataSetChanged();
+        }
     }
 
     public ListAdapter getmOriginalAdapter() {
         return mOriginalAdapter;
     }
 
+    /**
+     * 获取已经创建的空白占位View的数量，滑动过程中该值应该保持不变
+     *
+     * @return 空白占位View的创建次数
+     */
+    public int getPlaceholderAllocationCount() {
+        return mPlaceholderPool.getAllocationCount();
+    }
+
+    /**
+     * 用于HeaderViewGridAdapter获取某一行的高度，以便设置空白占位View的高度
+     */
+    private interface RowHeightLookup {
+        int getRowHeight(int row);
+    }
+
     private class FullWidthFixedViewLayout extends FrameLayout {
         public FullWidthFixedViewLayout(Context context) {
             super(context);
@@ -378,10 +919,38 @@ public class StickyGridView extends GridView implements IStickyView {
         boolean mAreAllFixedViewsSelectable;
         private final boolean mIsFilterable;
 
-        private int mRowHeight = -1;
+        private RowHeightLookup mRowHeightLookup;
+
+        private StickyGridFilter<?> mChunkedFilter;
 
-        public HeaderViewGridAdapter(ArrayList<FixedViewInfo> headerViewInfos, ArrayList<FixedViewInfo> footerViewInfos,  ListAdapter adapter) {
+        private GridSegmentTable mSegmentTable;
+
+        private final PlaceholderPool mPlaceholderPool;
+
+        /**
+         * 监听被包装的adapter的数据变化，以便重建SegmentTable。该observer需要最后注册，这样在通知时会最先被调用
+         */
+        private final DataSetObserver mAdapterObserver = new DataSetObserver() {
+            @Override
+            public void onChanged() {
+                rebuildSegmentTable();
+            }
+
+            @Override
+            public void onInvalidated() {
+                rebuildSegmentTable();
+            }
+        };
+        private boolean mAdapterObserverRegistered;
+
+        /**
+         * 通过registerDataSetObserver()注册的observer个数，为0时不再监听被包装的adapter
+         */
+        private int mObserverCount;
+
+        public HeaderViewGridAdapter(ArrayList<FixedViewInfo> headerViewInfos, ArrayList<FixedViewInfo> footerViewInfos,  ListAdapter adapter, PlaceholderPool placeholderPool) {
             mAdapter = adapter;
+            mPlaceholderPool = placeholderPool;
             mIsFilterable = adapter instanceof Filterable;
             if (headerViewInfos == null) {
                 throw new IllegalArgumentException("headerViewInfos cannot be null");
@@ -392,6 +961,12 @@ public class StickyGridView extends GridView implements IStickyView {
             mHeaderViewInfos = headerViewInfos;
             mFooterViewInfos = footerViewInfos;
             mAreAllFixedViewsSelectable = areAllListInfosSelectable(mHeaderViewInfos) && areAllListInfosSelectable(mFooterViewInfos);
+            rebuildSegmentTable();
+        }
+
+        private void rebuildSegmentTable() {
+            mSegmentTable = new GridSegmentTable(getHeadersCount(), getFootersCount(),
+                    mAdapter != null ? mAdapter.getCount() : 0, mNumColumns);
         }
 
         public int getHeadersCount() {
@@ -417,8 +992,12 @@ public class StickyGridView extends GridView implements IStickyView {
             }
         }
 
-        public void setRowHeight(int height) {
-            mRowHeight = height;
+        public void setRowHeightLookup(RowHeightLookup rowHeightLookup) {
+            mRowHeightLookup = rowHeightLookup;
+        }
+
+        public void setChunkedFilter(StickyGridFilter<?> chunkedFilter) {
+            mChunkedFilter = chunkedFilter;
         }
 
         private boolean areAllListInfosSelectable(ArrayList<FixedViewInfo> infos) {
@@ -438,7 +1017,7 @@ public class StickyGridView extends GridView implements IStickyView {
                 if (info.view == v) {
                     mHeaderViewInfos.remove(i);
                     mAreAllFixedViewsSelectable = areAllListInfosSelectable(mHeaderViewInfos) && areAllListInfosSelectable(mFooterViewInfos);
-                    mDataSetObservable.notifyChanged();
+                    notifyDataSetChanged();
                     return true;
                 }
             }
@@ -451,24 +1030,16 @@ public class StickyGridView extends GridView implements IStickyView {
                 if (info.view == v) {
                     mFooterViewInfos.remove(i);
                     mAreAllFixedViewsSelectable = areAllListInfosSelectable(mHeaderViewInfos) && areAllListInfosSelectable(mFooterViewInfos);
-                    mDataSetObservable.notifyChanged();
+                    notifyDataSetChanged();
                     return true;
                 }
             }
             return false;
         }
 
-        private int getAdapterAndPlaceHolderCount() {
-            return (int) (Math.ceil(1f * mAdapter.getCount() / mNumColumns) * mNumColumns);
-        }
-
         @Override
         public int getCount() {
-            if (mAdapter != null) {
-                return getHeadersCount() * mNumColumns + getFootersCount() * mNumColumns + getAdapterAndPlaceHolderCount();
-            } else {
-                return getHeadersCount() * mNumColumns + getFootersCount() * mNumColumns;
-            }
+            return mSegmentTable.count;
         }
 
         @Override
@@ -483,77 +1054,50 @@ public class StickyGridView extends GridView implements IStickyView {
         @Override
         public boolean isEnabled(int position) {
             // Header (negative positions will throw an ArrayIndexOutOfBoundsException)
-            int numHeadersAndPlaceholders = getHeadersCount() * mNumColumns;
-            if (position < numHeadersAndPlaceholders) {
-                return (position % mNumColumns == 0)
-                        && mHeaderViewInfos.get(position / mNumColumns).isSelectable;
-            }
-            // Adapter
-            final int adjPosition = position - numHeadersAndPlaceholders;
-            int adapterCount = 0;
-            int numAdapterEmptyPlaceHolder = getAdapterAndPlaceHolderCount();
-            if (mAdapter != null) {
-                adapterCount = mAdapter.getCount();
-                if (adjPosition < adapterCount) {
-                    return mAdapter.isEnabled(adjPosition);
-                }
-                if(adjPosition < numAdapterEmptyPlaceHolder) {
+            final GridSegmentTable table = mSegmentTable;
+            switch (table.segmentOf(position)) {
+                case GridSegmentTable.SEGMENT_HEADER:
+                    return (position % table.numColumns == 0)
+                            && mHeaderViewInfos.get(position / table.numColumns).isSelectable;
+                case GridSegmentTable.SEGMENT_ADAPTER:
+                    return mAdapter.isEnabled(position - table.headerEnd);
+                case GridSegmentTable.SEGMENT_PLACEHOLDER:
                     return false;
-                }
-            }
-
-            int numFootersAndPlaceholders = getFootersCount() * mNumColumns;
-            final int footerAdjPosition = position - numHeadersAndPlaceholders - numAdapterEmptyPlaceHolder;
-            if(footerAdjPosition < numFootersAndPlaceholders) {
-                return (footerAdjPosition % mNumColumns == 0)
-                        && mFooterViewInfos.get(footerAdjPosition / mNumColumns).isSelectable;
+                default:
+                    final int footerAdjPosition = position - table.placeholderEnd;
+                    return (footerAdjPosition % table.numColumns == 0)
+                            && mFooterViewInfos.get(footerAdjPosition / table.numColumns).isSelectable;
             }
-            throw new ArrayIndexOutOfBoundsException(position);
         }
 
         @Override
         public Object getItem(int position) {
             // Header (negative positions will throw an ArrayIndexOutOfBoundsException)
-            int numHeadersAndPlaceholders = getHeadersCount() * mNumColumns;
-            if (position < numHeadersAndPlaceholders) {
-                if (position % mNumColumns == 0) {
-                    return mHeaderViewInfos.get(position / mNumColumns).data;
-                }
-                return null;
-            }
-            // Adapter
-            final int adjPosition = position - numHeadersAndPlaceholders;
-            int adapterCount = 0;
-            int numAdapterEmptyPlaceHolder = getAdapterAndPlaceHolderCount();
-            if (mAdapter != null) {
-                adapterCount = mAdapter.getCount();
-                if (adjPosition < adapterCount) {
-                    return mAdapter.getItem(adjPosition);
-                }
-                if(adapterCount < numAdapterEmptyPlaceHolder)
+            final GridSegmentTable table = mSegmentTable;
+            switch (table.segmentOf(position)) {
+                case GridSegmentTable.SEGMENT_HEADER:
+                    if (position % table.numColumns == 0) {
+                        return mHeaderViewInfos.get(position / table.numColumns).data;
+                    }
+                    return null;
+                case GridSegmentTable.SEGMENT_ADAPTER:
+                    return mAdapter.getItem(position - table.headerEnd);
+                case GridSegmentTable.SEGMENT_PLACEHOLDER:
+                    return null;
+                default:
+                    final int footerAdjPosition = position - table.placeholderEnd;
+                    if (footerAdjPosition % table.numColumns == 0) {
+                        return mFooterViewInfos.get(footerAdjPosition / table.numColumns).data;
+                    }
                     return null;
             }
-
-            int numFootersAndPlaceholders = getFootersCount() * mNumColumns;
-            final int footerAdjPosition = position - numHeadersAndPlaceholders - numAdapterEmptyPlaceHolder;
-            if(footerAdjPosition < numFootersAndPlaceholders) {
-                if( footerAdjPosition % mNumColumns == 0) {
-                    return mFooterViewInfos.get(footerAdjPosition / mNumColumns).data;
-                }
-                return null;
-            }
-            throw new ArrayIndexOutOfBoundsException(position);
         }
 
         @Override
         public long getItemId(int position) {
-            int numHeadersAndPlaceholders = getHeadersCount() * mNumColumns;
-            if (mAdapter != null && position >= numHeadersAndPlaceholders) {
-                int adjPosition = position - numHeadersAndPlaceholders;
-                int adapterCount = mAdapter.getCount();
-                if (adjPosition < adapterCount) {
-                    return mAdapter.getItemId(adjPosition);
-                }
+            final GridSegmentTable table = mSegmentTable;
+            if (position >= table.headerEnd && position < table.adapterEnd) {
+                return mAdapter.getItemId(position - table.headerEnd);
             }
             return -1;
         }
@@ -568,121 +1112,124 @@ public class StickyGridView extends GridView implements IStickyView {
 
         @Override
         public View getView(int position, View convertView, ViewGroup parent) {
+            StickyTrace.beginSection("HeaderViewGridAdapter#getView");
+            try {
+                return getViewInternal(position, convertView, parent);
+            } finally {
+                StickyTrace.endSection();
+            }
+        }
+
+        private View getViewInternal(int position, View convertView, ViewGroup parent) {
             // Header (negative positions will throw an ArrayIndexOutOfBoundsException)
-            int numHeadersAndPlaceholders = getHeadersCount() * mNumColumns;
-            if (position < numHeadersAndPlaceholders) {
-                View headerViewContainer = mHeaderViewInfos
-                        .get(position / mNumColumns).viewContainer;
-                if (position % mNumColumns == 0) {
-                    return headerViewContainer;
-                } else {
-                    if (convertView == null) {
-                        convertView = new View(parent.getContext());
+            final GridSegmentTable table = mSegmentTable;
+            switch (table.segmentOf(position)) {
+                case GridSegmentTable.SEGMENT_HEADER: {
+                    View headerViewContainer = mHeaderViewInfos
+                            .get(position / table.numColumns).viewContainer;
+                    if (position % table.numColumns == 0) {
+                        return headerViewContainer;
                     }
                     // We need to do this because GridView uses the height of the last item
                     // in a row to determine the height for the entire row.
-                    convertView.setVisibility(View.INVISIBLE);
-                    convertView.setMinimumHeight(headerViewContainer.getHeight());
-                    return convertView;
+                    PlaceholderView placeholder = mPlaceholderPool.obtain(PlaceholderPool.TYPE_HEADER,
+                            GridSegmentTable.placeholderSlotOf(position, table.numColumns), parent.getContext());
+                    placeholder.setPlaceholderHeight(headerViewContainer.getHeight());
+                    return placeholder;
                 }
-            }
-            // Adapter
-            final int adjPosition = position - numHeadersAndPlaceholders;
-            int adapterCount = 0;
-            int numAdapterEmptyPlaceHolder = getAdapterAndPlaceHolderCount();
-            if (mAdapter != null) {
-                adapterCount = mAdapter.getCount();
-                if (adjPosition < adapterCount) {
-                    return mAdapter.getView(adjPosition, convertView, parent);
-                }
-                if(adjPosition < numAdapterEmptyPlaceHolder) {
-                    if (convertView == null) {
-                        convertView = new View(parent.getContext());
-                    }
+                case GridSegmentTable.SEGMENT_ADAPTER:
+                    return mAdapter.getView(position - table.headerEnd, convertView, parent);
+                case GridSegmentTable.SEGMENT_PLACEHOLDER: {
                     // We need to do this because GridView uses the height of the last item
                     // in a row to determine the height for the entire row.
-                    convertView.setVisibility(View.INVISIBLE);
-                    convertView.setMinimumHeight(mRowHeight);
-                    return convertView;
+                    PlaceholderView placeholder = mPlaceholderPool.obtain(PlaceholderPool.TYPE_ADAPTER,
+                            position - table.adapterEnd, parent.getContext());
+                    int rowHeight = mRowHeightLookup != null ? mRowHeightLookup.getRowHeight(position / table.numColumns) : -1;
+                    placeholder.setPlaceholderHeight(Math.max(0, rowHeight));
+                    return placeholder;
                 }
-            }
-
-            int numFootersAndPlaceholders = getFootersCount() * mNumColumns;
-            final int footerAdjPosition = position - numHeadersAndPlaceholders - numAdapterEmptyPlaceHolder;
-            if(footerAdjPosition < numFootersAndPlaceholders) {
-                View footerViewContainer = mFooterViewInfos
-                        .get(footerAdjPosition / mNumColumns).viewContainer;
-                if (footerAdjPosition % mNumColumns == 0) {
-                    return footerViewContainer;
-                } else {
-                    if (convertView == null) {
-                        convertView = new View(parent.getContext());
+                default: {
+                    final int footerAdjPosition = position - table.placeholderEnd;
+                    View footerViewContainer = mFooterViewInfos
+                            .get(footerAdjPosition / table.numColumns).viewContainer;
+                    if (footerAdjPosition % table.numColumns == 0) {
+                        return footerViewContainer;
                     }
                     // We need to do this because GridView uses the height of the last item
                     // in a row to determine the height for the entire row.
-                    convertView.setVisibility(View.INVISIBLE);
-                    convertView.setMinimumHeight(footerViewContainer.getHeight());
-                    return convertView;
+                    PlaceholderView placeholder = mPlaceholderPool.obtain(PlaceholderPool.TYPE_FOOTER,
+                            GridSegmentTable.placeholderSlotOf(footerAdjPosition, table.numColumns), parent.getContext());
+                    placeholder.setPlaceholderHeight(footerViewContainer.getHeight());
+                    return placeholder;
                 }
             }
-
-            throw new ArrayIndexOutOfBoundsException(position);
         }
 
+        /**
+         * 空白占位View由PlaceholderPool按格子缓存，和header、footer一样不参与AbsListView的回收
+         */
         @Override
         public int getItemViewType(int position) {
-            int numHeadersAndPlaceholders = getHeadersCount() * mNumColumns;
-            if (position < numHeadersAndPlaceholders && (position % mNumColumns != 0)) {
-                // Placeholders get the last view type number
-                return mAdapter != null ? mAdapter.getViewTypeCount() : 1;
-            }
-            int adapterCount = 0;
-            int numAdapterEmptyPlaceHolder = getAdapterAndPlaceHolderCount();
-            if (mAdapter != null && position >= numHeadersAndPlaceholders) {
-                int adjPosition = position - numHeadersAndPlaceholders;
-                adapterCount = mAdapter.getCount();
-                if (adjPosition < adapterCount) {
-                    return mAdapter.getItemViewType(adjPosition);
-                }
-                if(adjPosition < numAdapterEmptyPlaceHolder) {
-                    return mAdapter != null ? mAdapter.getViewTypeCount() + 1 : 2;
-                }
+            final GridSegmentTable table = mSegmentTable;
+            if (position < 0 || position >= table.count) {
+                return AdapterView.ITEM_VIEW_TYPE_HEADER_OR_FOOTER;
             }
-
-            int numFootersAndPlaceholders = getFootersCount() * mNumColumns;
-            final int footerAdjPosition = position - numHeadersAndPlaceholders - numAdapterEmptyPlaceHolder;
-            if(footerAdjPosition < numFootersAndPlaceholders && (footerAdjPosition % mNumColumns != 0)) {
-                return mAdapter != null ? mAdapter.getViewTypeCount() : 1;
+            switch (table.segmentOf(position)) {
+                case GridSegmentTable.SEGMENT_ADAPTER:
+                    return mAdapter.getItemViewType(position - table.headerEnd);
+                default:
+                    return AdapterView.ITEM_VIEW_TYPE_HEADER_OR_FOOTER;
             }
-            return AdapterView.ITEM_VIEW_TYPE_HEADER_OR_FOOTER;
         }
 
         @Override
         public int getViewTypeCount() {
             if (mAdapter != null) {
-                return mAdapter.getViewTypeCount() + 2;
+                return mAdapter.getViewTypeCount();
             }
-            return 3;
+            return 1;
         }
 
         @Override
         public void registerDataSetObserver(DataSetObserver observer) {
             mDataSetObservable.registerObserver(observer);
+            mObserverCount++;
             if (mAdapter != null) {
+                // DataSetObservable从后往前通知，mAdapterObserver始终保持最后注册，保证SegmentTable先于其它observer重建
+                if (mAdapterObserverRegistered) {
+                    mAdapter.unregisterDataSetObserver(mAdapterObserver);
+                } else {
+                    // 没有监听期间(例如GridView从window移除后)数据可能已经变化
+                    rebuildSegmentTable();
+                }
                 mAdapter.registerDataSetObserver(observer);
+                mAdapter.registerDataSetObserver(mAdapterObserver);
+                mAdapterObserverRegistered = true;
             }
         }
 
         @Override
         public void unregisterDataSetObserver(DataSetObserver observer) {
             mDataSetObservable.unregisterObserver(observer);
+            mObserverCount--;
             if (mAdapter != null) {
                 mAdapter.unregisterDataSetObserver(observer);
+                // 被丢弃的包装不能再被使用者的adapter引用，也不需要继续重建SegmentTable
+                if (mObserverCount == 0 && mAdapterObserverRegistered) {
+                    mAdapter.unregisterDataSetObserver(mAdapterObserver);
+                    mAdapterObserverRegistered = false;
+                }
             }
         }
 
+        /**
+         * 设置了StickyGridFilter时返回它，否则返回被包装adapter的Filter
+         */
         @Override
         public Filter getFilter() {
+            if (mChunkedFilter != null) {
+                return mChunkedFilter;
+            }
             if (mIsFilterable) {
                 return ((Filterable) mAdapter).getFilter();
             }
@@ -695,6 +1242,19 @@ public class StickyGridView extends GridView implements IStickyView {
         }
 
         public void notifyDataSetChanged() {
+            rebuildSegmentTable();
+            mDataSetObservable.notifyChanged();
+        }
+
+        /**
+         * 被包装的adapter在末尾追加了item，直接使用追加后的分段表，只通知AbsListView，不通知被包装adapter的observer
+         */
+        void notifyItemsAppended(GridSegmentTable table) {
+            if (mAdapter == null || mAdapter.getCount() != table.adapterCount) {
+                throw new IllegalStateException("Adapter count " + (mAdapter == null ? 0 : mAdapter.getCount())
+                        + " does not match the appended count " + table.adapterCount);
+            }
+            mSegmentTable = table;
             mDataSetObservable.notifyChanged();
         }
     }
@@ -758,6 +1318,13 @@ public class StickyGridView extends GridView implements IStickyView {
             if(mDelegate != null) {
                 mDelegate.onScrollStateChanged(view, scrollState);
             }
+            StickyScrollCallback callback = getStickyScrollCallback();
+            if(callback == null)
+                return;
+            if(callback.getCurrentItem() != getPagePosition())
+                return;
+            // AbsListView的滑动状态和StickyScrollStateCallback的取值一致
+            mScrollDispatcher.dispatchScrollStateChanged(callback, scrollState);
         }
 
         @Override
@@ -765,25 +1332,30 @@ public class StickyGridView extends GridView implements IStickyView {
             if(mDelegate != null) {
                 mDelegate.onScroll(view, firstVisibleItem, visibleItemCount, totalItemCount);
             }
-            StickyScrollCallback callback = getStickyScrollCallback();
-            if(callback == null)
-                return;
-            if(callback.getCurrentItem() != getPagePosition())
-                return;
-            Log.d("Grid", "firstVisible =" + firstVisibleItem);
-            if(firstVisibleItem == 0) {
-                View firstView = getChildAt(0);
-                if(firstView != null) {
-                    int top = firstView.getTop();
-                    if(top < - callback.getStickyViewTop())
-                        top = -callback.getStickyViewTop();
-                    if(top > 0)
-                        top = 0;
-                    Log.d("Grid", "scroll top = " + top);
-                    callback.onScrollChanged(top);
-                } else if(firstVisibleItem < 6) {
-                    callback.onScrollChanged(-callback.getStickyViewTop());
+            StickyTrace.beginSection("StickyGridView#onScroll");
+            try {
+                recordRowHeights(firstVisibleItem, totalItemCount);
+                recordStableIdAnchor(firstVisibleItem);
+                if(mItemPrefetcher != null && visibleItemCount > 0) {
+                    int headerCount = mHeaderViewInfos.size() * Math.max(1, getNumColumnsCompatible());
+                    mItemPrefetcher.onScroll(firstVisibleItem - headerCount, firstVisibleItem + visibleItemCount - 1 - headerCount);
                 }
+                checkLoadMore(firstVisibleItem, visibleItemCount);
+                StickyScrollCallback callback = getStickyScrollCallback();
+                if(callback == null)
+                    return;
+                if(callback.getCurrentItem() != getPagePosition())
+                    return;
+                if(StickyTrace.ENABLED)
+                    StickyTrace.log("StickyGridView firstVisible = " + firstVisibleItem);
+                if(getChildCount() == 0)
+                    return;
+                int top = StickyGeometry.toTranslationY(getScrollTop(), callback.getStickyViewTop());
+                if(StickyTrace.ENABLED)
+                    StickyTrace.log("StickyGridView scroll top = " + top);
+                mScrollDispatcher.dispatchScrollChanged(callback, top);
+            } finally {
+                StickyTrace.endSection();
             }
         }
     };
@@ -796,6 +1368,16 @@ public class StickyGridView extends GridView implements IStickyView {
     @Override
     public void setStickyScrollCallback(StickyScrollCallback stickyScrollCallback) {
         mStickyScrollCallback = stickyScrollCallback;
+        mScrollDispatcher.invalidate();
+    }
+
+    /**
+     * 获取滑动偏移值的分发器，可以通过它查看收到和实际分发的次数
+     *
+     * @return StickyScrollDispatcher
+     */
+    public StickyScrollDispatcher getScrollDispatcher() {
+        return mScrollDispatcher;
     }
 
     @Override
@@ -813,45 +1395,129 @@ public class StickyGridView extends GridView implements IStickyView {
         StickyScrollCallback callback = getStickyScrollCallback();
         if(callback == null)
             throw new IllegalStateException("getStickyScrollCallback() return null");
+        mHeadPlaceHolderRow = getHeaderViewCount();
+        mHeadPlaceHolder = view;
         addHeaderView(view, null, false);
         view.setMinimumHeight(callback.getHeaderViewHeight());
     }
 
+    @Override
+    public void setHeadPlaceHolderHeight(int height) {
+        if(mHeadPlaceHolder == null)
+            return;
+        int oldHeight = mHeadPlaceHolder.getMinimumHeight();
+        if(oldHeight == height)
+            return;
+        // 占位View所在的行可能已经滑出屏幕，直接修正记录的行高，保证getScrollTop()不变
+        int recorded = mRowHeightIndex.getHeight(mHeadPlaceHolderRow);
+        if(recorded >= 0)
+            mRowHeightIndex.setHeight(mHeadPlaceHolderRow, recorded + height - oldHeight);
+        mHeadPlaceHolder.setMinimumHeight(height);
+    }
+
+    /**
+     * 获取第一行往上滑动的距离，未布局时返回0<br>
+     * 第一行已经滑出屏幕时，根据已记录的行高计算，时间复杂度为O(log rows)
+     *
+     * @return 往上滑动的距离
+     */
     public int getFirstViewScrollTop() {
-        if (getFirstVisiblePosition() == 0) {
-            View firstView = getChildAt(0);
-            if (null != firstView) {
-                return -firstView.getTop();
-            }
+        View firstView = getChildAt(0);
+        int numColumns = getNumColumnsCompatible();
+        if (null == firstView || numColumns <= 0) {
+            return 0;
         }
-        return Integer.MAX_VALUE;
+        return mRowHeightIndex.getOffset(getFirstVisiblePosition() / numColumns) - firstView.getTop();
     }
 
     @Override
     public int getScrollTop() {
-        if (getFirstVisiblePosition() == 0) {
-            View firstView = getChildAt(0);
-            if (null != firstView) {
-                return -firstView.getTop();
-            }
+        return Math.abs(getFirstViewScrollTop());
+    }
+
+    @Override
+    public int getAnchorPosition() {
+        if(mPendingAnchorPosition != INVALID_POSITION)
+            return mPendingAnchorPosition;
+        return getChildCount() > 0 ? getFirstVisiblePosition() : 0;
+    }
+
+    @Override
+    public int getAnchorOffset() {
+        if(mPendingAnchorPosition != INVALID_POSITION)
+            return mPendingAnchorOffset;
+        View firstView = getChildAt(0);
+        return firstView != null ? firstView.getTop() : 0;
+    }
+
+    @Override
+    public void restoreScrollPosition(int anchorPosition, int anchorOffset, int scrollTop) {
+        mPendingAnchorPosition = anchorPosition;
+        mPendingAnchorOffset = anchorOffset;
+        mPendingScrollTop = scrollTop;
+        if(getAdapter() != null)
+            applyPendingScrollPosition();
+    }
+
+    /**
+     * 锚点之前的行还没有测量过，按保存时的scrollTop估算它们的高度，使得恢复后getScrollTop()和保存时一致<br>
+     * API 21以下GridView没有setSelectionFromTop()，只能定位到锚点所在的行
+     */
+    private void applyPendingScrollPosition() {
+        int position = mPendingAnchorPosition;
+        mPendingAnchorPosition = INVALID_POSITION;
+        mStableIdAnchor.cancelResync();
+        int numColumns = getNumColumnsCompatible();
+        ListAdapter adapter = getAdapter();
+        if (numColumns > 0 && adapter != null) {
+            int rowCount = (adapter.getCount() + numColumns - 1) / numColumns;
+            if (mRowHeightIndex.size() != rowCount)
+                mRowHeightIndex.resize(rowCount);
+            int anchorOffset = Build.VERSION.SDK_INT >= 21 ? mPendingAnchorOffset : 0;
+            mRowHeightIndex.distributeHeight(0, position / numColumns, mPendingScrollTop + anchorOffset);
+        }
+        if (Build.VERSION.SDK_INT >= 21) {
+            setSelectionFromTop(position, mPendingAnchorOffset);
+        } else {
+            setSelection(position);
         }
-        return Integer.MAX_VALUE;
     }
 
     @Override
     public void adjustPositionByTranslationYOfStickyView(int translationY) {
-        int transY = Math.abs(translationY);
-        int stickyViewTop = getStickyScrollCallback().getStickyViewTop();
-        int scrollHeight = getFirstViewScrollTop();
-
-        if(transY >= stickyViewTop) {
-            if(scrollHeight >= transY)
+        StickyTrace.beginSection("StickyGridView#adjustPosition");
+        try {
+            mScrollDispatcher.invalidate();
+            int stickyViewTop = getStickyScrollCallback().getStickyViewTop();
+            int scrollTop = getFirstViewScrollTop();
+            if(!StickyGeometry.needsReposition(translationY, stickyViewTop, scrollTop))
                 return;
-//            setSelectionFromTop(0, translationY);
-            smoothScrollToPositionFromTop(0, translationY, 0);
+            repositionTo(Math.abs(translationY), scrollTop);
+        } finally {
+            StickyTrace.endSection();
+        }
+    }
+
+    /**
+     * 立即滑动到指定位置，不经过smooth scroll的多帧动画<br>
+     * 1. 目标位置和当前已布局的item有重叠时，用scrollListBy()平移已有的child，只补齐露出来的行，不重新布局<br>
+     * 2. 否则用setSelectionFromTop()在下一次布局里直接定位，目标位置一定在header占位所在的第一行内<br>
+     * 3. API 21以下GridView没有setSelectionFromTop()，仍然使用duration为0的smoothScrollToPositionFromTop()
+     *
+     * @param targetScrollTop 目标滑动距离
+     * @param scrollTop       当前的滑动距离
+     */
+    private void repositionTo(int targetScrollTop, int scrollTop) {
+        int delta = targetScrollTop - scrollTop;
+        if(delta == 0)
+            return;
+        int visibleHeight = getHeight() - getListPaddingTop() - getListPaddingBottom();
+        if(Build.VERSION.SDK_INT >= 19 && getChildCount() > 0 && Math.abs(delta) < visibleHeight) {
+            scrollListBy(delta);
+        } else if(Build.VERSION.SDK_INT >= 21) {
+            setSelectionFromTop(0, -targetScrollTop);
         } else {
-//            setSelectionFromTop(0, translationY);
-            smoothScrollToPositionFromTop(0, translationY, 0);
+            smoothScrollToPositionFromTop(0, -targetScrollTop, 0);
         }
     }
 
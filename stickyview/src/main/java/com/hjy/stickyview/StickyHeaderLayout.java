@@ -0,0 +1,303 @@
+package com.hjy.stickyview;
+
+import android.content.Context;
+import android.os.Build;
+import android.support.v4.view.NestedScrollingParent;
+import android.support.v4.view.NestedScrollingParentHelper;
+import android.support.v4.view.ViewCompat;
+import android.support.v4.widget.NestedScrollView;
+import android.support.v4.widget.ScrollerCompat;
+import android.support.v7.widget.RecyclerView;
+import android.util.AttributeSet;
+import android.view.View;
+import android.view.ViewGroup;
+import android.webkit.WebView;
+import android.widget.AbsListView;
+import android.widget.ScrollView;
+
+/**
+ * 基于嵌套滑动的header容器，第一个子View为header，第二个子View为内容(例如ViewPager或者RecyclerView)<br>
+ * 内容往上滑动时，在子View滑动之前先通过onNestedPreScroll()收起header，内容滑到顶部后继续往下滑动才展开header，
+ * header和内容在同一次分发里移动，不需要StickyScrollCallback，也没有一帧的延迟<br>
+ * 任何支持嵌套滑动的子View都可以使用：support库里的RecyclerView、NestedScrollView，
+ * 以及API 21以上调用了setNestedScrollingEnabled(true)的ListView、ScrollView等<br>
+ * 子View fling的过程中不会分发嵌套滑动(例如support 22.2的RecyclerView)，所以fling时用相同的速度模拟一次fling：
+ * 往上时header还没有完全收起则由onNestedPreFling()消费这次fling，先收起header，收起后把剩余的速度交给子View继续fling；
+ * 往下时子View照常fling，等子View滑到顶部后用剩余的距离展开header
+ */
+public class StickyHeaderLayout extends ViewGroup implements NestedScrollingParent {
+
+    /**
+     * header位置变化的监听
+     */
+    public interface OnHeaderOffsetChangedListener {
+
+        /**
+         * @param layout StickyHeaderLayout
+         * @param offset header往上移动的距离，取值范围为[-getStickyViewTop(), 0]
+         */
+        public void onHeaderOffsetChanged(StickyHeaderLayout layout, int offset);
+    }
+
+    private final NestedScrollingParentHelper mParentHelper;
+
+    private View mHeaderView;
+    private View mContentView;
+
+    /**
+     * header最多可以往上移动的距离，小于0时为header的高度
+     */
+    private int mStickyViewTop = -1;
+
+    /**
+     * header当前往上移动的距离，小于等于0
+     */
+    private int mHeaderOffset;
+
+    private OnHeaderOffsetChangedListener mOnHeaderOffsetChangedListener;
+
+    private final ScrollerCompat mFlingScroller;
+    private View mFlingTarget;
+    private int mLastFlingY;
+
+    private final Runnable mFlingRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (!mFlingScroller.computeScrollOffset()) {
+                mFlingTarget = null;
+                return;
+            }
+            int y = mFlingScroller.getCurrY();
+            int dy = y - mLastFlingY;
+            mLastFlingY = y;
+            if (dy > 0) {
+                offsetHeaderBy(-dy);
+                if (mHeaderOffset == -getStickyViewTop()) {
+                    // header已经收起，剩余的速度交给子View
+                    View target = mFlingTarget;
+                    int velocity = Math.round(mFlingScroller.getCurrVelocity());
+                    stopFling();
+                    flingContent(target, velocity);
+                    return;
+                }
+            } else if (dy < 0 && !ViewCompat.canScrollVertically(mFlingTarget, -1)) {
+                if (offsetHeaderBy(-dy) == 0 && mHeaderOffset == 0) {
+                    stopFling();
+                    return;
+                }
+            }
+            ViewCompat.postOnAnimation(StickyHeaderLayout.this, this);
+        }
+    };
+
+    public StickyHeaderLayout(Context context) {
+        this(context, null);
+    }
+
+    public StickyHeaderLayout(Context context, AttributeSet attrs) {
+        this(context, attrs, 0);
+    }
+
+    public StickyHeaderLayout(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+        mParentHelper = new NestedScrollingParentHelper(this);
+        mFlingScroller = ScrollerCompat.create(context);
+    }
+
+    /**
+     * 设置sticky view距离header顶部的距离，即header最多可以往上移动的距离
+     *
+     * @param stickyViewTop 小于0时header可以完全收起
+     */
+    public void setStickyViewTop(int stickyViewTop) {
+        mStickyViewTop = stickyViewTop;
+        requestLayout();
+    }
+
+    public int getStickyViewTop() {
+        if (mStickyViewTop >= 0 || mHeaderView == null)
+            return Math.max(0, mStickyViewTop);
+        return mHeaderView.getMeasuredHeight();
+    }
+
+    public void setOnHeaderOffsetChangedListener(OnHeaderOffsetChangedListener listener) {
+        mOnHeaderOffsetChangedListener = listener;
+    }
+
+    public int getHeaderOffset() {
+        return mHeaderOffset;
+    }
+
+    /**
+     * 直接设置header的位置，例如恢复状态时
+     *
+     * @param offset header往上移动的距离，会被限制在[-getStickyViewTop(), 0]范围内
+     */
+    public void setHeaderOffset(int offset) {
+        offsetHeaderBy(offset - mHeaderOffset);
+    }
+
+    /**
+     * 移动header和内容，不会触发布局
+     *
+     * @return 实际移动的距离
+     */
+    private int offsetHeaderBy(int dy) {
+        int offset = Math.max(-getStickyViewTop(), Math.min(0, mHeaderOffset + dy));
+        int delta = offset - mHeaderOffset;
+        if (delta == 0)
+            return 0;
+        mHeaderOffset = offset;
+        if (mHeaderView != null) {
+            mHeaderView.offsetTopAndBottom(delta);
+            mContentView.offsetTopAndBottom(delta);
+        }
+        if (mOnHeaderOffsetChangedListener != null) {
+            mOnHeaderOffsetChangedListener.onHeaderOffsetChanged(this, offset);
+        }
+        return delta;
+    }
+
+    private void ensureChildren() {
+        if (getChildCount() != 2)
+            throw new IllegalStateException("StickyHeaderLayout must have exactly two children: header and content");
+        mHeaderView = getChildAt(0);
+        mContentView = getChildAt(1);
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        ensureChildren();
+        int width = MeasureSpec.getSize(widthMeasureSpec);
+        int height = MeasureSpec.getSize(heightMeasureSpec);
+        setMeasuredDimension(width, height);
+
+        measureChild(mHeaderView, widthMeasureSpec, heightMeasureSpec);
+        // header收起后，内容刚好填满剩余的空间
+        int contentHeight = Math.max(0, height - mHeaderView.getMeasuredHeight() + getStickyViewTop());
+        int contentWidthSpec = getChildMeasureSpec(widthMeasureSpec, 0, mContentView.getLayoutParams().width);
+        mContentView.measure(contentWidthSpec, MeasureSpec.makeMeasureSpec(contentHeight, MeasureSpec.EXACTLY));
+
+        int offset = Math.max(-getStickyViewTop(), mHeaderOffset);
+        if (offset != mHeaderOffset) {
+            mHeaderOffset = offset;
+            if (mOnHeaderOffsetChangedListener != null) {
+                mOnHeaderOffsetChangedListener.onHeaderOffsetChanged(this, offset);
+            }
+        }
+    }
+
+    @Override
+    protected void onLayout(boolean changed, int l, int t, int r, int b) {
+        int headerHeight = mHeaderView.getMeasuredHeight();
+        mHeaderView.layout(0, mHeaderOffset, mHeaderView.getMeasuredWidth(), mHeaderOffset + headerHeight);
+        int contentTop = mHeaderOffset + headerHeight;
+        mContentView.layout(0, contentTop, mContentView.getMeasuredWidth(), contentTop + mContentView.getMeasuredHeight());
+    }
+
+    @Override
+    public boolean onStartNestedScroll(View child, View target, int nestedScrollAxes) {
+        return (nestedScrollAxes & ViewCompat.SCROLL_AXIS_VERTICAL) != 0;
+    }
+
+    @Override
+    public void onNestedScrollAccepted(View child, View target, int nestedScrollAxes) {
+        mParentHelper.onNestedScrollAccepted(child, target, nestedScrollAxes);
+        // 手指重新按下，停止上一次fling对header的移动
+        stopFling();
+    }
+
+    @Override
+    public void onStopNestedScroll(View target) {
+        mParentHelper.onStopNestedScroll(target);
+    }
+
+    /**
+     * 往上滑动时先收起header，剩下的距离再交给子View
+     */
+    @Override
+    public void onNestedPreScroll(View target, int dx, int dy, int[] consumed) {
+        if (dy > 0) {
+            consumed[1] = -offsetHeaderBy(-dy);
+        }
+    }
+
+    /**
+     * 子View已经滑到顶部，剩下往下滑动的距离用来展开header
+     */
+    @Override
+    public void onNestedScroll(View target, int dxConsumed, int dyConsumed, int dxUnconsumed, int dyUnconsumed) {
+        if (dyUnconsumed < 0) {
+            offsetHeaderBy(-dyUnconsumed);
+        }
+    }
+
+    /**
+     * 往上fling并且header还没有完全收起时消费这次fling，先收起header，再把剩余的速度交给子View，
+     * 避免子View和header同时以相同的速度移动
+     */
+    @Override
+    public boolean onNestedPreFling(View target, float velocityX, float velocityY) {
+        if (velocityY <= 0 || mHeaderOffset == -getStickyViewTop())
+            return false;
+        startFling(target, velocityY);
+        return true;
+    }
+
+    /**
+     * 往下fling时子View照常fling，滑到顶部后由模拟的fling展开header
+     */
+    @Override
+    public boolean onNestedFling(View target, float velocityX, float velocityY, boolean consumed) {
+        if (velocityY >= 0 || mHeaderOffset == 0)
+            return false;
+        startFling(target, velocityY);
+        return false;
+    }
+
+    private void startFling(View target, float velocityY) {
+        stopFling();
+        mFlingTarget = target;
+        mLastFlingY = 0;
+        mFlingScroller.fling(0, 0, 0, Math.round(velocityY), 0, 0, Integer.MIN_VALUE, Integer.MAX_VALUE);
+        ViewCompat.postOnAnimation(this, mFlingRunnable);
+    }
+
+    /**
+     * 让子View以velocityY继续fling，不支持的View直接停止
+     */
+    private static void flingContent(View target, int velocityY) {
+        if (velocityY <= 0)
+            return;
+        if (target instanceof RecyclerView) {
+            ((RecyclerView) target).fling(0, velocityY);
+        } else if (target instanceof NestedScrollView) {
+            ((NestedScrollView) target).fling(velocityY);
+        } else if (target instanceof ScrollView) {
+            ((ScrollView) target).fling(velocityY);
+        } else if (target instanceof WebView) {
+            ((WebView) target).flingScroll(0, velocityY);
+        } else if (target instanceof AbsListView && Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            ((AbsListView) target).fling(velocityY);
+        }
+    }
+
+    private void stopFling() {
+        if (mFlingTarget == null)
+            return;
+        mFlingScroller.abortAnimation();
+        removeCallbacks(mFlingRunnable);
+        mFlingTarget = null;
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        stopFling();
+    }
+
+    @Override
+    public int getNestedScrollAxes() {
+        return mParentHelper.getNestedScrollAxes();
+    }
+}
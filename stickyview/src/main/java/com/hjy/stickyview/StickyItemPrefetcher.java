@@ -0,0 +1,445 @@
+package com.hjy.stickyview;
+
+import android.content.Context;
+import android.database.DataSetObserver;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.util.SparseArray;
+import android.view.Choreographer;
+import android.view.Display;
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.WindowManager;
+import android.widget.AbsListView;
+import android.widget.Adapter;
+import android.widget.Filter;
+import android.widget.Filterable;
+import android.widget.ListAdapter;
+import android.widget.SectionIndexer;
+import android.widget.WrapperListAdapter;
+
+import java.util.ArrayList;
+
+/**
+ * 在主线程空闲时，按滑动方向提前调用Adapter的getView()，创建并绑定即将滑入屏幕的item<br>
+ * 每一帧绘制完成后，只在这一帧剩余的时间内预取，预计超出这一帧的截止时间时停止，留到下一帧继续<br>
+ * AbsListView的RecycleBin无法从外部放入View，所以包装后的Adapter对AbsListView返回IGNORE_ITEM_VIEW_TYPE，
+ * 由预取器自己按view type回收item：item被AbsListView移除时放回回收池，预取时作为convertView重新绑定
+ */
+public class StickyItemPrefetcher {
+
+    private static final int NO_POSITION = -1;
+
+    /**
+     * 每个view type最多回收的View个数为预取数量的倍数
+     */
+    private static final int MAX_POOL_SIZE_FACTOR = 2;
+
+    private final AbsListView mListView;
+    private final int mPrefetchCount;
+    private final long mFrameIntervalNanos;
+
+    private ListAdapter mAdapter;
+
+    /**
+     * 以Adapter position为key保存已经预取、还没有被AbsListView取走的View
+     */
+    private final SparseArray<TrackedView> mPrefetchedViews = new SparseArray<TrackedView>();
+
+    /**
+     * 以view type为key保存被AbsListView移除的View
+     */
+    private final SparseArray<ArrayList<TrackedView>> mRecycledViews = new SparseArray<ArrayList<TrackedView>>();
+
+    private int mFirstPosition = NO_POSITION;
+    private int mLastPosition = NO_POSITION;
+    private int mDirection = 1;
+    private long mLastPositionChangeNanos;
+
+    /**
+     * 每秒滑过的item数
+     */
+    private float mVelocity;
+
+    private long mFrameDeadlineNanos;
+    private long mAverageBindNanos;
+    private boolean mFrameScheduled;
+    private boolean mIdleHandlerAdded;
+
+    private long mHitCount;
+    private long mMissCount;
+    private long mPrefetchedCount;
+
+    private final Choreographer.FrameCallback mFrameCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            mFrameScheduled = false;
+            mFrameDeadlineNanos = frameTimeNanos + mFrameIntervalNanos;
+            if (!mIdleHandlerAdded) {
+                mIdleHandlerAdded = true;
+                Looper.myQueue().addIdleHandler(mIdleHandler);
+            }
+        }
+    };
+
+    /**
+     * 这一帧的绘制已经完成，在截止时间之前预取
+     */
+    private final MessageQueue.IdleHandler mIdleHandler = new MessageQueue.IdleHandler() {
+        @Override
+        public boolean queueIdle() {
+            mIdleHandlerAdded = false;
+            StickyTrace.beginSection("StickyItemPrefetcher#prefetch");
+            try {
+                int position;
+                while ((position = nextPrefetchPosition()) != NO_POSITION) {
+                    if (System.nanoTime() + mAverageBindNanos > mFrameDeadlineNanos) {
+                        // 这一帧的时间不够了，等到下一帧之后继续
+                        scheduleFrame();
+                        break;
+                    }
+                    prefetch(position);
+                }
+            } finally {
+                StickyTrace.endSection();
+            }
+            return false;
+        }
+    };
+
+    private final DataSetObserver mDataSetObserver = new DataSetObserver() {
+        @Override
+        public void onChanged() {
+            recyclePrefetchedViews(Integer.MAX_VALUE, Integer.MIN_VALUE);
+        }
+
+        @Override
+        public void onInvalidated() {
+            recyclePrefetchedViews(Integer.MAX_VALUE, Integer.MIN_VALUE);
+        }
+    };
+
+    /**
+     * 记录View的view type，并在View被AbsListView移除时放回回收池
+     */
+    private final class TrackedView implements View.OnAttachStateChangeListener {
+
+        final View view;
+        final int viewType;
+
+        TrackedView(View view, int viewType) {
+            this.view = view;
+            this.viewType = viewType;
+        }
+
+        @Override
+        public void onViewAttachedToWindow(View v) {
+        }
+
+        @Override
+        public void onViewDetachedFromWindow(View v) {
+            // 整个AbsListView离开window时，item仍然是它的子View，不需要回收
+            if (v.getParent() == null)
+                recycle(this);
+        }
+    }
+
+    /**
+     * @param listView      StickyListView或者StickyGridView
+     * @param prefetchCount 每次最少预取的item个数，快速滑动时按速度预取更多
+     */
+    public StickyItemPrefetcher(AbsListView listView, int prefetchCount) {
+        if (prefetchCount <= 0)
+            throw new IllegalArgumentException("prefetchCount must be > 0");
+        mListView = listView;
+        mPrefetchCount = prefetchCount;
+        mFrameIntervalNanos = getFrameIntervalNanos(listView.getContext());
+    }
+
+    private static long getFrameIntervalNanos(Context context) {
+        Display display = ((WindowManager) context.getSystemService(Context.WINDOW_SERVICE)).getDefaultDisplay();
+        float refreshRate = display.getRefreshRate();
+        if (refreshRate < 30)
+            refreshRate = 60;
+        return (long) (1000000000 / refreshRate);
+    }
+
+    /**
+     * 包装Adapter，由StickyListView、StickyGridView的setAdapter()调用
+     */
+    ListAdapter wrap(ListAdapter adapter) {
+        if (mAdapter != null) {
+            mAdapter.unregisterDataSetObserver(mDataSetObserver);
+            recyclePrefetchedViews(Integer.MAX_VALUE, Integer.MIN_VALUE);
+        }
+        mRecycledViews.clear();
+        mFirstPosition = NO_POSITION;
+        mLastPosition = NO_POSITION;
+        mAdapter = adapter;
+        if (adapter == null)
+            return null;
+        adapter.registerDataSetObserver(mDataSetObserver);
+        return new PrefetchAdapter(adapter);
+    }
+
+    /**
+     * 每次滑动时调用，position都是包装前Adapter里的position
+     *
+     * @param firstPosition 第一个可见item
+     * @param lastPosition  最后一个可见item
+     */
+    void onScroll(int firstPosition, int lastPosition) {
+        if (mAdapter == null)
+            return;
+        if (mFirstPosition != NO_POSITION && firstPosition != mFirstPosition) {
+            long now = System.nanoTime();
+            mDirection = firstPosition > mFirstPosition ? 1 : -1;
+            if (mLastPositionChangeNanos > 0 && now > mLastPositionChangeNanos)
+                mVelocity = (firstPosition - mFirstPosition) * 1000000000f / (now - mLastPositionChangeNanos);
+            mLastPositionChangeNanos = now;
+        } else if (mFirstPosition == NO_POSITION) {
+            mLastPositionChangeNanos = System.nanoTime();
+        }
+        mFirstPosition = firstPosition;
+        mLastPosition = lastPosition;
+        int lookahead = getLookahead();
+        recyclePrefetchedViews(firstPosition - lookahead, lastPosition + lookahead);
+        if (nextPrefetchPosition() != NO_POSITION)
+            scheduleFrame();
+    }
+
+    /**
+     * 至少预取mPrefetchCount个，快速滑动时预取接下来两帧会滑入的item
+     */
+    private int getLookahead() {
+        int itemsInTwoFrames = (int) Math.ceil(Math.abs(mVelocity) * mFrameIntervalNanos * 2 / 1000000000f);
+        return Math.max(mPrefetchCount, Math.min(itemsInTwoFrames, mPrefetchCount * 4));
+    }
+
+    private int nextPrefetchPosition() {
+        if (mAdapter == null || mFirstPosition == NO_POSITION || mListView.getWindowToken() == null)
+            return NO_POSITION;
+        int count = mAdapter.getCount();
+        int lookahead = getLookahead();
+        if (mDirection > 0) {
+            for (int position = mLastPosition + 1; position <= mLastPosition + lookahead && position < count; position++) {
+                if (position >= 0 && mPrefetchedViews.get(position) == null)
+                    return position;
+            }
+        } else {
+            for (int position = mFirstPosition - 1; position >= mFirstPosition - lookahead && position >= 0; position--) {
+                if (position < count && mPrefetchedViews.get(position) == null)
+                    return position;
+            }
+        }
+        return NO_POSITION;
+    }
+
+    private void scheduleFrame() {
+        if (mFrameScheduled)
+            return;
+        mFrameScheduled = true;
+        Choreographer.getInstance().postFrameCallback(mFrameCallback);
+    }
+
+    private void prefetch(int position) {
+        long start = System.nanoTime();
+        TrackedView tracked = obtainView(position, mListView);
+        mPrefetchedViews.put(position, tracked);
+        mPrefetchedCount++;
+        long bindNanos = System.nanoTime() - start;
+        mAverageBindNanos = mAverageBindNanos == 0 ? bindNanos : (mAverageBindNanos * 3 + bindNanos) / 4;
+    }
+
+    /**
+     * 从回收池里取出同样view type的View作为convertView，调用Adapter的getView()
+     */
+    private TrackedView obtainView(int position, ViewGroup parent) {
+        int viewType = mAdapter.getItemViewType(position);
+        TrackedView convert = null;
+        if (viewType != Adapter.IGNORE_ITEM_VIEW_TYPE) {
+            ArrayList<TrackedView> pool = mRecycledViews.get(viewType);
+            if (pool != null && !pool.isEmpty())
+                convert = pool.remove(pool.size() - 1);
+        }
+        View view = mAdapter.getView(position, convert != null ? convert.view : null, parent);
+        if (convert != null && convert.view == view)
+            return convert;
+        TrackedView tracked = new TrackedView(view, viewType);
+        view.addOnAttachStateChangeListener(tracked);
+        return tracked;
+    }
+
+    private void recycle(TrackedView tracked) {
+        if (tracked.viewType == Adapter.IGNORE_ITEM_VIEW_TYPE)
+            return;
+        ArrayList<TrackedView> pool = mRecycledViews.get(tracked.viewType);
+        if (pool == null) {
+            pool = new ArrayList<TrackedView>();
+            mRecycledViews.put(tracked.viewType, pool);
+        }
+        if (pool.size() < mPrefetchCount * MAX_POOL_SIZE_FACTOR && !pool.contains(tracked))
+            pool.add(tracked);
+    }
+
+    /**
+     * 回收[first, last]以外已经预取的View
+     */
+    private void recyclePrefetchedViews(int first, int last) {
+        for (int i = mPrefetchedViews.size() - 1; i >= 0; i--) {
+            int position = mPrefetchedViews.keyAt(i);
+            if (position >= first && position <= last)
+                continue;
+            recycle(mPrefetchedViews.valueAt(i));
+            mPrefetchedViews.removeAt(i);
+        }
+    }
+
+    /**
+     * @return AbsListView直接取到预取View的次数
+     */
+    public long getHitCount() {
+        return mHitCount;
+    }
+
+    /**
+     * @return AbsListView需要的View还没有预取、只能在这一帧里创建的次数
+     */
+    public long getMissCount() {
+        return mMissCount;
+    }
+
+    /**
+     * @return 预取的次数，包括没有被用到的
+     */
+    public long getPrefetchedCount() {
+        return mPrefetchedCount;
+    }
+
+    /**
+     * @return 命中率，还没有请求过View时返回0
+     */
+    public float getHitRate() {
+        long total = mHitCount + mMissCount;
+        return total == 0 ? 0 : (float) mHitCount / total;
+    }
+
+    public void resetCounters() {
+        mHitCount = 0;
+        mMissCount = 0;
+        mPrefetchedCount = 0;
+    }
+
+    /**
+     * 优先返回已经预取的View，并让AbsListView不要回收item，改为由预取器回收<br>
+     * 和HeaderViewListAdapter一样总是实现Filterable、SectionIndexer，被包装的adapter没有实现时getFilter()、getSections()返回null，
+     * 这样AbsListView的文字过滤、FastScroller以及外层的header adapter仍然能看到被包装的adapter
+     */
+    private class PrefetchAdapter implements WrapperListAdapter, Filterable, SectionIndexer {
+
+        private final ListAdapter mWrapped;
+        private final boolean mIsFilterable;
+        private final SectionIndexer mSectionIndexer;
+
+        PrefetchAdapter(ListAdapter wrapped) {
+            mWrapped = wrapped;
+            mIsFilterable = wrapped instanceof Filterable;
+            mSectionIndexer = wrapped instanceof SectionIndexer ? (SectionIndexer) wrapped : null;
+        }
+
+        @Override
+        public ListAdapter getWrappedAdapter() {
+            return mWrapped;
+        }
+
+        @Override
+        public View getView(int position, View convertView, ViewGroup parent) {
+            // AbsListView不会传入convertView，有convertView的是测量行高等直接调用，不影响预取和命中率
+            if (convertView != null)
+                return mWrapped.getView(position, convertView, parent);
+            TrackedView prefetched = mPrefetchedViews.get(position);
+            if (prefetched != null) {
+                mPrefetchedViews.remove(position);
+                mHitCount++;
+                return prefetched.view;
+            }
+            mMissCount++;
+            return obtainView(position, parent).view;
+        }
+
+        @Override
+        public int getItemViewType(int position) {
+            return Adapter.IGNORE_ITEM_VIEW_TYPE;
+        }
+
+        @Override
+        public int getViewTypeCount() {
+            return mWrapped.getViewTypeCount();
+        }
+
+        @Override
+        public boolean areAllItemsEnabled() {
+            return mWrapped.areAllItemsEnabled();
+        }
+
+        @Override
+        public boolean isEnabled(int position) {
+            return mWrapped.isEnabled(position);
+        }
+
+        @Override
+        public void registerDataSetObserver(DataSetObserver observer) {
+            mWrapped.registerDataSetObserver(observer);
+        }
+
+        @Override
+        public void unregisterDataSetObserver(DataSetObserver observer) {
+            mWrapped.unregisterDataSetObserver(observer);
+        }
+
+        @Override
+        public int getCount() {
+            return mWrapped.getCount();
+        }
+
+        @Override
+        public Object getItem(int position) {
+            return mWrapped.getItem(position);
+        }
+
+        @Override
+        public long getItemId(int position) {
+            return mWrapped.getItemId(position);
+        }
+
+        @Override
+        public boolean hasStableIds() {
+            return mWrapped.hasStableIds();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return mWrapped.isEmpty();
+        }
+
+        @Override
+        public Filter getFilter() {
+            return mIsFilterable ? ((Filterable) mWrapped).getFilter() : null;
+        }
+
+        @Override
+        public Object[] getSections() {
+            return mSectionIndexer != null ? mSectionIndexer.getSections() : null;
+        }
+
+        @Override
+        public int getPositionForSection(int sectionIndex) {
+            return mSectionIndexer != null ? mSectionIndexer.getPositionForSection(sectionIndex) : 0;
+        }
+
+        @Override
+        public int getSectionForPosition(int position) {
+            return mSectionIndexer != null ? mSectionIndexer.getSectionForPosition(position) : 0;
+        }
+    }
+}
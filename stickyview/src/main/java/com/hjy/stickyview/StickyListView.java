@@ -1,11 +1,17 @@
 package com.hjy.stickyview;
 
 import android.content.Context;
+import android.graphics.Canvas;
+import android.database.DataSetObserver;
 import android.util.AttributeSet;
 import android.view.View;
 import android.widget.AbsListView;
+import android.widget.ListAdapter;
 import android.widget.ListView;
 
+import com.hjy.stickyview.core.ItemHeightIndex;
+import com.hjy.stickyview.core.StickyGeometry;
+
 /**
  * Created by hjy on 9/15/15.<br>
  */
@@ -18,8 +24,40 @@ public class StickyListView extends ListView implements IStickyView{
      */
     private int mPagePosition;
 
+    private final StickyScrollDispatcher mScrollDispatcher = new StickyScrollDispatcher(this);
+
     private OnScrollListener mDelegate;
 
+    /**
+     * 记录每个position的item高度，用于计算任意位置下的滑动距离
+     */
+    private final ItemHeightIndex mItemHeightIndex = new ItemHeightIndex();
+
+    private ListAdapter mObservedAdapter;
+
+    /**
+     * 头部占位View，以及它在Adapter里的position
+     */
+    private View mHeadPlaceHolder;
+    private int mHeadPlaceHolderPosition;
+
+    private PinnedSectionAdapter mPinnedSectionAdapter;
+    private final PinnedSectionDrawer mPinnedSectionDrawer = new PinnedSectionDrawer(this);
+
+    private StickyItemPrefetcher mItemPrefetcher;
+
+    /**
+     * Adapter有stable id时，数据变化后按id恢复第一个可见的数据item
+     */
+    private final StableIdAnchor mStableIdAnchor = new StableIdAnchor();
+
+    /**
+     * 等待setAdapter()之后恢复的滑动位置
+     */
+    private int mPendingAnchorPosition = INVALID_POSITION;
+    private int mPendingAnchorOffset;
+    private int mPendingScrollTop;
+
     public StickyListView(Context context) {
         this(context, null);
     }
@@ -34,6 +72,18 @@ public class StickyListView extends ListView implements IStickyView{
         setOnScrollListener(mOnScrollListener);
     }
 
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        mScrollDispatcher.onAttachedToWindow();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        mScrollDispatcher.onDetachedFromWindow();
+    }
+
     @Override
     public void setPagePosition(int position) {
         mPagePosition = position;
@@ -42,6 +92,24 @@ public class StickyListView extends ListView implements IStickyView{
     @Override
     public void setStickyScrollCallback(StickyScrollCallback stickyScrollCallback) {
         mStickyScrollCallback = stickyScrollCallback;
+        mScrollDispatcher.invalidate();
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        if(w != oldw)
+            mPinnedSectionDrawer.invalidate();
+    }
+
+    /**
+     * Adapter实现了PinnedSectionAdapter时，在子View之上绘制当前分组的固定header
+     */
+    @Override
+    protected void dispatchDraw(Canvas canvas) {
+        super.dispatchDraw(canvas);
+        if(mPinnedSectionAdapter != null)
+            mPinnedSectionDrawer.draw(canvas, mPinnedSectionAdapter, getHeaderViewsCount(), PinnedSectionDrawer.getPinnedTop(this));
     }
 
     @Override
@@ -59,6 +127,13 @@ public class StickyListView extends ListView implements IStickyView{
             if(mDelegate != null) {
                 mDelegate.onScrollStateChanged(view, scrollState);
             }
+            StickyScrollCallback callback = getStickyScrollCallback();
+            if(callback == null)
+                return;
+            if(callback.getCurrentItem() != getPagePosition())
+                return;
+            // AbsListView的滑动状态和StickyScrollStateCallback的取值一致
+            mScrollDispatcher.dispatchScrollStateChanged(callback, scrollState);
         }
 
         @Override
@@ -66,28 +141,145 @@ public class StickyListView extends ListView implements IStickyView{
             if(mDelegate != null) {
                 mDelegate.onScroll(view, firstVisibleItem, visibleItemCount, totalItemCount);
             }
-            StickyScrollCallback callback = getStickyScrollCallback();
-            if(callback == null)
-                return;
-            if(callback.getCurrentItem() != getPagePosition())
-                return;
-            if(firstVisibleItem == 0) {
-                View firstView = getChildAt(0);
-                if(firstView != null) {
-                    int top = firstView.getTop();
-                    if(top < - callback.getStickyViewTop())
-                        top = -callback.getStickyViewTop();
-                    if(top > 0)
-                        top = 0;
-                    callback.onScrollChanged(top);
-                } else if(firstVisibleItem < 6) {
-                    callback.onScrollChanged(-callback.getStickyViewTop());
+            StickyTrace.beginSection("StickyListView#onScroll");
+            try {
+                recordItemHeights(firstVisibleItem, totalItemCount);
+                recordStableIdAnchor(firstVisibleItem, totalItemCount);
+                if(mItemPrefetcher != null && visibleItemCount > 0) {
+                    int headerCount = getHeaderViewsCount();
+                    mItemPrefetcher.onScroll(firstVisibleItem - headerCount, firstVisibleItem + visibleItemCount - 1 - headerCount);
                 }
+                StickyScrollCallback callback = getStickyScrollCallback();
+                if(callback == null)
+                    return;
+                if(callback.getCurrentItem() != getPagePosition())
+                    return;
+                if(getChildCount() == 0)
+                    return;
+                int top = StickyGeometry.toTranslationY(getScrollTop(), callback.getStickyViewTop());
+                mScrollDispatcher.dispatchScrollChanged(callback, top);
+            } finally {
+                StickyTrace.endSection();
+            }
+        }
+    };
+
+    /**
+     * 记录当前已布局的item高度，相邻两个item的top之差即包含了divider的高度
+     */
+    private void recordItemHeights(int firstVisibleItem, int totalItemCount) {
+        if(mItemHeightIndex.size() != totalItemCount)
+            mItemHeightIndex.reset(totalItemCount);
+        int childCount = getChildCount();
+        for(int i = 0; i < childCount; i++) {
+            View child = getChildAt(i);
+            int height;
+            if(i + 1 < childCount) {
+                height = getChildAt(i + 1).getTop() - child.getTop();
+            } else {
+                height = child.getHeight() + getDividerHeight();
+            }
+            mItemHeightIndex.setHeight(firstVisibleItem + i, height);
+        }
+    }
+
+    /**
+     * 头部占位已经滑出屏幕时，记录第一个可见item的id，它在数据变化后的位置由layoutChildren()修正
+     */
+    private void recordStableIdAnchor(int firstVisibleItem, int totalItemCount) {
+        View firstView = getChildAt(0);
+        ListAdapter adapter = getAdapter();
+        if(firstView == null || adapter == null || firstVisibleItem < getHeaderViewsCount()
+                || firstVisibleItem >= totalItemCount - getFooterViewsCount()) {
+            mStableIdAnchor.clearAnchor();
+            return;
+        }
+        mStableIdAnchor.record(adapter, firstVisibleItem, firstView.getTop(), getFirstViewScrollTop());
+    }
+
+    /**
+     * 数据变化后AbsListView只按原来的position同步，在它处理数据变化之前把同步的位置换成锚点item的新位置，
+     * 在同一次布局里完成，锚点之前的item按记录的scrollTop估算高度，header的偏移保持不变
+     */
+    @Override
+    protected void layoutChildren() {
+        if(mStableIdAnchor.needsResync() && getAdapter() != null) {
+            ListAdapter adapter = getAdapter();
+            int position = mStableIdAnchor.findResyncPosition(adapter, getHeaderViewsCount(), adapter.getCount() - getFooterViewsCount());
+            if(position != INVALID_POSITION) {
+                int top = mStableIdAnchor.getAnchorTop();
+                mItemHeightIndex.distributeHeight(0, position, mStableIdAnchor.getScrollTop() + top);
+                // 布局过程中requestLayout()会被忽略，这里只修改同步的position和偏移
+                setSelectionFromTop(position, top - getListPaddingTop());
             }
         }
+        super.layoutChildren();
+    }
+
+    @Override
+    public void setAdapter(ListAdapter adapter) {
+        if(mObservedAdapter != null) {
+            mObservedAdapter.unregisterDataSetObserver(mDataSetObserver);
+            mObservedAdapter = null;
+        }
+        super.setAdapter(mItemPrefetcher != null ? mItemPrefetcher.wrap(adapter) : adapter);
+        mPinnedSectionAdapter = adapter instanceof PinnedSectionAdapter ? (PinnedSectionAdapter) adapter : null;
+        mStableIdAnchor.onInvalidated();
+        mPinnedSectionDrawer.invalidate();
+        // 直接监听原始Adapter，不经过预取和header的包装
+        mObservedAdapter = adapter;
+        if(mObservedAdapter != null) {
+            mObservedAdapter.registerDataSetObserver(mDataSetObserver);
+            mItemHeightIndex.reset(getAdapter().getCount());
+        } else {
+            mItemHeightIndex.reset(0);
+        }
+        if(mPendingAnchorPosition != INVALID_POSITION && mObservedAdapter != null)
+            applyPendingScrollPosition();
+    }
+
+    /**
+     * 在主线程空闲时按滑动方向预取item，必须在setAdapter()之前调用
+     *
+     * @param count 每次最少预取的item个数，小于等于0时关闭
+     */
+    public void setItemPrefetchCount(int count) {
+        mItemPrefetcher = count > 0 ? new StickyItemPrefetcher(this, count) : null;
+    }
+
+    /**
+     * @return 未开启预取时返回null，可以通过它查看命中率
+     */
+    public StickyItemPrefetcher getItemPrefetcher() {
+        return mItemPrefetcher;
+    }
+
+    private DataSetObserver mDataSetObserver = new DataSetObserver() {
+        @Override
+        public void onChanged() {
+            mItemHeightIndex.reset(getAdapter().getCount());
+            mStableIdAnchor.onDataChanged();
+            mPinnedSectionDrawer.invalidate();
+        }
+
+        @Override
+        public void onInvalidated() {
+            mItemHeightIndex.reset(0);
+            mStableIdAnchor.onInvalidated();
+            mPinnedSectionDrawer.invalidate();
+        }
     };
 
 
+    /**
+     * 获取滑动偏移值的分发器，可以通过它查看收到和实际分发的次数
+     *
+     * @return StickyScrollDispatcher
+     */
+    public StickyScrollDispatcher getScrollDispatcher() {
+        return mScrollDispatcher;
+    }
+
     @Override
     public int getPagePosition() {
         return mPagePosition;
@@ -103,37 +295,92 @@ public class StickyListView extends ListView implements IStickyView{
         StickyScrollCallback callback = getStickyScrollCallback();
         if(callback == null)
             throw new IllegalStateException("getStickyScrollCallback() return null");
+        mHeadPlaceHolderPosition = getHeaderViewsCount();
+        mHeadPlaceHolder = view;
         addHeaderView(view, null, false);
         view.setMinimumHeight(callback.getHeaderViewHeight());
     }
 
     @Override
-    public void adjustPositionByTranslationYOfStickyView(int translationY) {
-        int transY = Math.abs(translationY);
-        int stickyViewTop = getStickyScrollCallback().getStickyViewTop();
-        int scrollHeight = getFirstViewScrollTop();
+    public void setHeadPlaceHolderHeight(int height) {
+        if(mHeadPlaceHolder == null)
+            return;
+        int oldHeight = mHeadPlaceHolder.getMinimumHeight();
+        if(oldHeight == height)
+            return;
+        // 占位View可能已经滑出屏幕，直接修正记录的高度，保证getScrollTop()不变
+        int recorded = mItemHeightIndex.getHeight(mHeadPlaceHolderPosition);
+        if(recorded >= 0)
+            mItemHeightIndex.setHeight(mHeadPlaceHolderPosition, recorded + height - oldHeight);
+        mHeadPlaceHolder.setMinimumHeight(height);
+    }
 
-        if(transY >= stickyViewTop) {
-            if(scrollHeight >= transY)
+    @Override
+    public void adjustPositionByTranslationYOfStickyView(int translationY) {
+        StickyTrace.beginSection("StickyListView#adjustPosition");
+        try {
+            mScrollDispatcher.invalidate();
+            int stickyViewTop = getStickyScrollCallback().getStickyViewTop();
+            if(!StickyGeometry.needsReposition(translationY, stickyViewTop, getFirstViewScrollTop()))
                 return;
             setSelectionFromTop(0, translationY);
-        } else {
-            setSelectionFromTop(0, translationY);
+        } finally {
+            StickyTrace.endSection();
         }
     }
 
+    /**
+     * 获取第一个item往上滑动的距离，未布局时返回0<br>
+     * 第一个item已经滑出屏幕时，根据已记录的item高度计算，时间复杂度为O(log n)
+     *
+     * @return 往上滑动的距离
+     */
     public int getFirstViewScrollTop() {
-        if (getFirstVisiblePosition() == 0) {
-            View firstView = getChildAt(0);
-            if (null != firstView) {
-                return -firstView.getTop();
-            }
+        View firstView = getChildAt(0);
+        if (null == firstView) {
+            return 0;
         }
-        return Integer.MAX_VALUE;
+        return mItemHeightIndex.getOffset(getFirstVisiblePosition()) - firstView.getTop();
     }
 
     @Override
     public int getScrollTop() {
         return Math.abs(getFirstViewScrollTop());
     }
+
+    @Override
+    public int getAnchorPosition() {
+        if(mPendingAnchorPosition != INVALID_POSITION)
+            return mPendingAnchorPosition;
+        return getChildCount() > 0 ? getFirstVisiblePosition() : 0;
+    }
+
+    @Override
+    public int getAnchorOffset() {
+        if(mPendingAnchorPosition != INVALID_POSITION)
+            return mPendingAnchorOffset;
+        View firstView = getChildAt(0);
+        return firstView != null ? firstView.getTop() : 0;
+    }
+
+    @Override
+    public void restoreScrollPosition(int anchorPosition, int anchorOffset, int scrollTop) {
+        mPendingAnchorPosition = anchorPosition;
+        mPendingAnchorOffset = anchorOffset;
+        mPendingScrollTop = scrollTop;
+        if(getAdapter() != null)
+            applyPendingScrollPosition();
+    }
+
+    /**
+     * 锚点之前的item还没有测量过，按保存时的scrollTop估算它们的高度，使得恢复后getScrollTop()和保存时一致<br>
+     * setSelectionFromTop()只记录位置，在第一次布局时直接定位
+     */
+    private void applyPendingScrollPosition() {
+        int position = mPendingAnchorPosition;
+        mPendingAnchorPosition = INVALID_POSITION;
+        mStableIdAnchor.cancelResync();
+        mItemHeightIndex.distributeHeight(0, position, mPendingScrollTop + mPendingAnchorOffset);
+        setSelectionFromTop(position, mPendingAnchorOffset);
+    }
 }
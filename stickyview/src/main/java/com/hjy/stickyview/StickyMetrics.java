@@ -0,0 +1,79 @@
+package com.hjy.stickyview;
+
+import android.view.Choreographer;
+
+/**
+ * 收集滑动路径的统计数据，每一帧汇总一次交给StickyMetricsListener<br>
+ * 没有设置listener时不做任何统计，也不会计时；只能在主线程使用
+ */
+public final class StickyMetrics {
+
+    private static StickyMetricsListener sListener;
+
+    private static final StickyFrameMetrics sFrameMetrics = new StickyFrameMetrics();
+    private static boolean sFrameScheduled;
+
+    private static final Choreographer.FrameCallback sFrameCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            sFrameScheduled = false;
+            StickyMetricsListener listener = sListener;
+            if (listener == null)
+                return;
+            sFrameMetrics.frameTimeNanos = frameTimeNanos;
+            listener.onFrameMetrics(sFrameMetrics);
+            sFrameMetrics.reset();
+        }
+    };
+
+    private StickyMetrics() {
+    }
+
+    /**
+     * 设置统计数据的接收者
+     *
+     * @param listener 传null时停止统计
+     */
+    public static void setListener(StickyMetricsListener listener) {
+        sListener = listener;
+        sFrameMetrics.reset();
+        if (listener == null && sFrameScheduled) {
+            sFrameScheduled = false;
+            Choreographer.getInstance().removeFrameCallback(sFrameCallback);
+        }
+    }
+
+    static boolean isEnabled() {
+        return sListener != null;
+    }
+
+    static void recordScrollEvent() {
+        if (sListener == null)
+            return;
+        sFrameMetrics.scrollEvents++;
+        scheduleFrame();
+    }
+
+    static void recordScrollChanged(long durationNanos) {
+        if (sListener == null)
+            return;
+        sFrameMetrics.scrollChangedCalls++;
+        sFrameMetrics.scrollCallbackNanos += durationNanos;
+        scheduleFrame();
+    }
+
+    static void recordPageSync(long durationNanos) {
+        if (sListener == null)
+            return;
+        sFrameMetrics.pageSyncs++;
+        sFrameMetrics.pageSyncNanos += durationNanos;
+        scheduleFrame();
+    }
+
+    private static void scheduleFrame() {
+        if (sFrameScheduled)
+            return;
+        sFrameScheduled = true;
+        Choreographer.getInstance().postFrameCallback(sFrameCallback);
+    }
+}
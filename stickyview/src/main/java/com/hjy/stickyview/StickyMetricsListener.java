@@ -0,0 +1,14 @@
+package com.hjy.stickyview;
+
+/**
+ * 接收滑动路径的统计数据，通过StickyMetrics.setListener()设置
+ */
+public interface StickyMetricsListener {
+
+    /**
+     * 有统计数据的每一帧回调一次，在主线程调用
+     *
+     * @param metrics 这一帧的统计数据，只在回调期间有效，需要保存时请复制
+     */
+    public void onFrameMetrics(StickyFrameMetrics metrics);
+}
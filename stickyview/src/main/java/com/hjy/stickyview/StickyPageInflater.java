@@ -0,0 +1,106 @@
+package com.hjy.stickyview;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Message;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * 在后台线程里inflate页面布局，结果回调到主线程<br>
+ * 所有StickyPagerAdapter共用同一个线程，这个线程没有Looper：布局里有View必须在主线程创建时(例如构造方法里new Handler())，
+ * 在后台inflate会抛出异常，此时自动改为在主线程inflate，而不会把View的回调绑定到后台线程
+ */
+final class StickyPageInflater {
+
+    interface OnInflateFinishedListener {
+        void onInflateFinished(View view, int layoutId);
+    }
+
+    private static StickyPageInflater sInstance;
+
+    private final BlockingQueue<InflateRequest> mQueue = new LinkedBlockingQueue<InflateRequest>();
+    private final Handler mMainHandler;
+
+    private static class InflateRequest {
+        Context context;
+        int layoutId;
+        ViewGroup parent;
+        OnInflateFinishedListener listener;
+        View view;
+    }
+
+    static StickyPageInflater getInstance() {
+        if (sInstance == null) {
+            sInstance = new StickyPageInflater();
+        }
+        return sInstance;
+    }
+
+    private StickyPageInflater() {
+        mMainHandler = new Handler(Looper.getMainLooper(), new Handler.Callback() {
+            @Override
+            public boolean handleMessage(Message msg) {
+                InflateRequest request = (InflateRequest) msg.obj;
+                if (request.view == null) {
+                    request.view = LayoutInflater.from(request.context)
+                            .inflate(request.layoutId, request.parent, false);
+                }
+                request.listener.onInflateFinished(request.view, request.layoutId);
+                return true;
+            }
+        });
+        Thread thread = new Thread("StickyPageInflater") {
+            @Override
+            public void run() {
+                while (true) {
+                    InflateRequest request;
+                    try {
+                        request = mQueue.take();
+                    } catch (InterruptedException e) {
+                        continue;
+                    }
+                    inflateInBackground(request);
+                    Message.obtain(mMainHandler, 0, request).sendToTarget();
+                }
+            }
+        };
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static void inflateInBackground(InflateRequest request) {
+        StickyTrace.beginSection("StickyPageInflater#inflate");
+        try {
+            request.view = LayoutInflater.from(request.context).cloneInContext(request.context)
+                    .inflate(request.layoutId, request.parent, false);
+        } catch (RuntimeException e) {
+            if (StickyTrace.ENABLED)
+                StickyTrace.log("Failed to inflate page in the background, falling back to the main thread: " + e);
+        } finally {
+            StickyTrace.endSection();
+        }
+    }
+
+    /**
+     * 必须在主线程调用
+     *
+     * @param context  inflate使用的Context
+     * @param layoutId 布局id
+     * @param parent   用于生成LayoutParams，inflate出的View不会被添加进去
+     * @param listener 在主线程回调
+     */
+    void inflate(Context context, int layoutId, ViewGroup parent, OnInflateFinishedListener listener) {
+        InflateRequest request = new InflateRequest();
+        request.context = context;
+        request.layoutId = layoutId;
+        request.parent = parent;
+        request.listener = listener;
+        mQueue.add(request);
+    }
+}
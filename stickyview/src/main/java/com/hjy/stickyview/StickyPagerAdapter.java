@@ -0,0 +1,247 @@
+package com.hjy.stickyview;
+
+import android.content.Context;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.support.v4.view.PagerAdapter;
+import android.support.v4.view.ViewPager;
+import android.util.SparseArray;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+
+import java.util.ArrayList;
+
+/**
+ * 直接以View作为页面的PagerAdapter，负责页面的创建、registerPage()和setupHeadPlaceHolder()<br>
+ * 开启异步模式(默认)时，第一帧只同步创建当前页面，其余页面在后台线程inflate，再在主线程空闲时逐个添加，
+ * 每次空闲最多添加一个页面，避免页面同时创建导致第一帧变慢<br>
+ * 添加时页面直接定位到header当前的偏移，不需要再调整滑动位置
+ */
+public abstract class StickyPagerAdapter extends PagerAdapter {
+
+    private final Context mContext;
+    private final StickyCoordinator mStickyCoordinator;
+
+    private boolean mAsyncInflateEnabled = true;
+
+    /**
+     * 以page position为key保存已创建的页面
+     */
+    private final SparseArray<PageHolder> mPages = new SparseArray<PageHolder>();
+
+    /**
+     * 已经inflate完成、等待主线程空闲时添加的页面
+     */
+    private final ArrayList<PageHolder> mPendingAttachPages = new ArrayList<PageHolder>();
+    private boolean mIdleHandlerAdded;
+
+    private final MessageQueue.IdleHandler mIdleHandler = new MessageQueue.IdleHandler() {
+        @Override
+        public boolean queueIdle() {
+            if (!mPendingAttachPages.isEmpty()) {
+                attachPage(mPendingAttachPages.remove(0));
+            }
+            mIdleHandlerAdded = !mPendingAttachPages.isEmpty();
+            return mIdleHandlerAdded;
+        }
+    };
+
+    private static class PageHolder implements StickyPageInflater.OnInflateFinishedListener {
+
+        final StickyPagerAdapter adapter;
+        final int position;
+        final FrameLayout container;
+
+        View pageView;
+        IStickyView stickyView;
+        boolean destroyed;
+
+        PageHolder(StickyPagerAdapter adapter, int position, FrameLayout container) {
+            this.adapter = adapter;
+            this.position = position;
+            this.container = container;
+        }
+
+        @Override
+        public void onInflateFinished(View view, int layoutId) {
+            if (destroyed || pageView != null)
+                return;
+            pageView = view;
+            adapter.scheduleAttach(this);
+        }
+    }
+
+    public StickyPagerAdapter(Context context, StickyCoordinator stickyCoordinator) {
+        if (stickyCoordinator == null)
+            throw new IllegalArgumentException("stickyCoordinator cannot be null");
+        mContext = context;
+        mStickyCoordinator = stickyCoordinator;
+    }
+
+    /**
+     * 设置是否异步创建当前页面以外的页面，必须在setAdapter()之前调用
+     *
+     * @param enabled 默认开启
+     */
+    public void setAsyncInflateEnabled(boolean enabled) {
+        mAsyncInflateEnabled = enabled;
+    }
+
+    public boolean isAsyncInflateEnabled() {
+        return mAsyncInflateEnabled;
+    }
+
+    /**
+     * @param position 页面position
+     * @return 页面的布局id，异步模式下会在后台线程inflate
+     */
+    protected abstract int getPageLayoutId(int position);
+
+    /**
+     * 在inflate出的页面里找到IStickyView，之后会对它调用registerPage()和setupHeadPlaceHolder()
+     *
+     * @param position 页面position
+     * @param pageView inflate出的页面
+     * @return 页面里的IStickyView
+     */
+    protected abstract IStickyView onCreateStickyView(int position, View pageView);
+
+    /**
+     * 创建页面的头部占位View，默认创建一个不在布局里的PlaceholderView，适用于ListView、GridView、RecyclerView、WebView以及虚拟化模式的StickyScrollView<br>
+     * 普通的StickyScrollView需要占位View作为内容的第一个View放在布局里，此时必须重写，返回布局里的占位View
+     *
+     * @param position   页面position
+     * @param pageView   页面
+     * @param stickyView onCreateStickyView()的返回值，已经注册到StickyCoordinator
+     * @return 传给setupHeadPlaceHolder()的View
+     */
+    protected View onCreateHeadPlaceHolder(int position, View pageView, IStickyView stickyView) {
+        if (stickyView instanceof StickyScrollView && ((StickyScrollView) stickyView).getChildCount() > 0)
+            throw new IllegalStateException("StickyScrollView at page " + position
+                    + " has its own content, override onCreateHeadPlaceHolder() to return the placeholder in its layout");
+        PlaceholderView placeholder = new PlaceholderView(mContext);
+        placeholder.setLayoutParams(new ViewGroup.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, 0));
+        return placeholder;
+    }
+
+    /**
+     * 页面已经添加并注册，在这里设置Adapter等数据
+     *
+     * @param position   页面position
+     * @param pageView   页面
+     * @param stickyView onCreateStickyView()的返回值
+     */
+    protected abstract void onBindPage(int position, View pageView, IStickyView stickyView);
+
+    /**
+     * 页面被移除之前调用，页面还没有添加时不会调用
+     */
+    protected void onDestroyPage(int position, View pageView) {
+    }
+
+    /**
+     * @param position 页面position
+     * @return 已经添加的页面，还在创建中则返回null
+     */
+    public View getPageView(int position) {
+        PageHolder holder = mPages.get(position);
+        return holder != null && holder.stickyView != null ? holder.pageView : null;
+    }
+
+    @Override
+    public Object instantiateItem(ViewGroup container, int position) {
+        FrameLayout pageContainer = new FrameLayout(mContext);
+        container.addView(pageContainer);
+        PageHolder holder = new PageHolder(this, position, pageContainer);
+        mPages.put(position, holder);
+        if (!mAsyncInflateEnabled || isCurrentItem(container, position)) {
+            buildPageNow(holder);
+        } else {
+            StickyPageInflater.getInstance().inflate(mContext, getPageLayoutId(position), pageContainer, holder);
+        }
+        return holder;
+    }
+
+    private boolean isCurrentItem(ViewGroup container, int position) {
+        if (container instanceof ViewPager)
+            return ((ViewPager) container).getCurrentItem() == position;
+        return mStickyCoordinator.getCurrentItem() == position;
+    }
+
+    @Override
+    public void setPrimaryItem(ViewGroup container, int position, Object object) {
+        super.setPrimaryItem(container, position, object);
+        // 异步创建的页面还没有添加时就切换了过去，不再等待，立即创建
+        PageHolder holder = (PageHolder) object;
+        if (holder.stickyView == null) {
+            buildPageNow(holder);
+        }
+    }
+
+    @Override
+    public void destroyItem(ViewGroup container, int position, Object object) {
+        PageHolder holder = (PageHolder) object;
+        holder.destroyed = true;
+        mPendingAttachPages.remove(holder);
+        if (mPages.get(position) == holder) {
+            mPages.remove(position);
+        }
+        if (holder.stickyView != null) {
+            onDestroyPage(position, holder.pageView);
+            mStickyCoordinator.unregisterPage(position);
+        }
+        container.removeView(holder.container);
+    }
+
+    @Override
+    public boolean isViewFromObject(View view, Object object) {
+        return ((PageHolder) object).container == view;
+    }
+
+    /**
+     * 在当前线程立即inflate并添加页面，已经inflate完成的页面直接添加
+     */
+    private void buildPageNow(PageHolder holder) {
+        if (holder.pageView == null) {
+            StickyTrace.beginSection("StickyPagerAdapter#inflate");
+            try {
+                holder.pageView = LayoutInflater.from(mContext)
+                        .inflate(getPageLayoutId(holder.position), holder.container, false);
+            } finally {
+                StickyTrace.endSection();
+            }
+        }
+        mPendingAttachPages.remove(holder);
+        attachPage(holder);
+    }
+
+    private void scheduleAttach(PageHolder holder) {
+        mPendingAttachPages.add(holder);
+        if (!mIdleHandlerAdded) {
+            mIdleHandlerAdded = true;
+            Looper.myQueue().addIdleHandler(mIdleHandler);
+        }
+    }
+
+    /**
+     * 添加页面并注册到StickyCoordinator，registerPage()会让页面在第一次布局时就处于header当前的偏移
+     */
+    private void attachPage(PageHolder holder) {
+        if (holder.destroyed || holder.stickyView != null)
+            return;
+        StickyTrace.beginSection("StickyPagerAdapter#attachPage");
+        try {
+            View pageView = holder.pageView;
+            holder.container.addView(pageView);
+            IStickyView stickyView = onCreateStickyView(holder.position, pageView);
+            holder.stickyView = stickyView;
+            mStickyCoordinator.registerPage(holder.position, stickyView);
+            stickyView.setupHeadPlaceHolder(onCreateHeadPlaceHolder(holder.position, pageView, stickyView));
+            onBindPage(holder.position, pageView, stickyView);
+        } finally {
+            StickyTrace.endSection();
+        }
+    }
+}
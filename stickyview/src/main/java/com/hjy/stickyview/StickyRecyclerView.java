@@ -0,0 +1,461 @@
+package com.hjy.stickyview;
+
+import android.content.Context;
+import android.support.v7.widget.GridLayoutManager;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.support.v7.widget.StaggeredGridLayoutManager;
+import android.util.AttributeSet;
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.ViewParent;
+
+import com.hjy.stickyview.core.StickyGeometry;
+
+/**
+ * 基于RecyclerView实现的IStickyView，支持LinearLayoutManager、GridLayoutManager和StaggeredGridLayoutManager<br>
+ * 滑动距离由onScrolled()的dy累加得到，不依赖第一个child的getTop()，因此在任意位置都能得到准确的偏移值
+ */
+public class StickyRecyclerView extends RecyclerView implements IStickyView {
+
+    /**
+     * 头部占位View所使用的view type，需要避免和使用者的view type冲突
+     */
+    private static final int VIEW_TYPE_HEAD_PLACE_HOLDER = Integer.MIN_VALUE + 1;
+
+    private StickyScrollCallback mStickyScrollCallback;
+
+    /**
+     * 所在page的position，如果有多个page共同协作使用一个sticky view，则必须设置该值
+     */
+    private int mPagePosition;
+
+    private final StickyScrollDispatcher mScrollDispatcher = new StickyScrollDispatcher(this);
+
+    /**
+     * 头部占位View
+     */
+    private View mHeadPlaceHolder;
+
+    /**
+     * 累计往上滑动的距离
+     */
+    private int mScrollTop;
+
+    private Adapter mOriginalAdapter;
+
+    /**
+     * 等待Adapter和LayoutManager都设置之后恢复的滑动位置
+     */
+    private int mPendingAnchorPosition = NO_POSITION;
+    private int mPendingAnchorOffset;
+    private int mPendingScrollTop;
+    private HeaderViewRecyclerAdapter mHeaderViewAdapter;
+
+    public StickyRecyclerView(Context context) {
+        this(context, null);
+    }
+
+    public StickyRecyclerView(Context context, AttributeSet attrs) {
+        this(context, attrs, 0);
+    }
+
+    public StickyRecyclerView(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+        setOverScrollMode(OVER_SCROLL_ALWAYS);
+        addOnScrollListener(mOnScrollListener);
+    }
+
+    private OnScrollListener mOnScrollListener = new OnScrollListener() {
+        @Override
+        public void onScrollStateChanged(RecyclerView recyclerView, int newState) {
+            StickyScrollCallback callback = getStickyScrollCallback();
+            if (callback == null)
+                return;
+            if (callback.getCurrentItem() != getPagePosition())
+                return;
+            // RecyclerView的滑动状态和StickyScrollStateCallback的取值一致
+            mScrollDispatcher.dispatchScrollStateChanged(callback, newState);
+        }
+
+        @Override
+        public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+            StickyTrace.beginSection("StickyRecyclerView#onScrolled");
+            try {
+                mScrollTop += dy;
+                syncScrollTopWithHeadPlaceHolder();
+                dispatchScrollChanged();
+            } finally {
+                StickyTrace.endSection();
+            }
+        }
+    };
+
+    /**
+     * 头部占位View在屏幕上时，用它的位置校正累加的滑动距离，避免数据变化等情况造成的误差
+     */
+    private void syncScrollTopWithHeadPlaceHolder() {
+        if (mHeadPlaceHolder == null)
+            return;
+        LayoutManager layoutManager = getLayoutManager();
+        if (layoutManager == null)
+            return;
+        View firstView = layoutManager.findViewByPosition(0);
+        if (firstView != null && firstView == mHeadPlaceHolder) {
+            mScrollTop = -layoutManager.getDecoratedTop(firstView);
+        }
+        if (mScrollTop < 0)
+            mScrollTop = 0;
+    }
+
+    private void dispatchScrollChanged() {
+        StickyScrollCallback callback = getStickyScrollCallback();
+        if (callback == null)
+            return;
+        if (callback.getCurrentItem() != getPagePosition())
+            return;
+        mScrollDispatcher.dispatchScrollChanged(callback, StickyGeometry.toTranslationY(mScrollTop, callback.getStickyViewTop()));
+    }
+
+    @Override
+    public void setAdapter(Adapter adapter) {
+        mOriginalAdapter = adapter;
+        if (mHeaderViewAdapter != null) {
+            mHeaderViewAdapter.release();
+        }
+        if (adapter != null && mHeadPlaceHolder != null) {
+            mHeaderViewAdapter = new HeaderViewRecyclerAdapter(adapter);
+            super.setAdapter(mHeaderViewAdapter);
+        } else {
+            mHeaderViewAdapter = null;
+            super.setAdapter(adapter);
+        }
+        mScrollTop = 0;
+        applyPendingScrollPosition();
+    }
+
+    public Adapter getOriginalAdapter() {
+        return mOriginalAdapter;
+    }
+
+    @Override
+    public void setLayoutManager(LayoutManager layout) {
+        if (layout instanceof GridLayoutManager) {
+            GridLayoutManager gridLayoutManager = (GridLayoutManager) layout;
+            GridLayoutManager.SpanSizeLookup lookup = gridLayoutManager.getSpanSizeLookup();
+            if (!(lookup instanceof HeaderSpanSizeLookup)) {
+                gridLayoutManager.setSpanSizeLookup(new HeaderSpanSizeLookup(gridLayoutManager, lookup));
+            }
+        }
+        super.setLayoutManager(layout);
+        applyPendingScrollPosition();
+    }
+
+    /**
+     * 获取头部占位View的数量，0或者1
+     *
+     * @return 头部占位View的数量
+     */
+    public int getHeaderViewCount() {
+        return mHeaderViewAdapter != null ? 1 : 0;
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        mScrollDispatcher.onAttachedToWindow();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        mScrollDispatcher.onDetachedFromWindow();
+    }
+
+    @Override
+    public void setPagePosition(int position) {
+        mPagePosition = position;
+    }
+
+    @Override
+    public void setStickyScrollCallback(StickyScrollCallback stickyScrollCallback) {
+        mStickyScrollCallback = stickyScrollCallback;
+        mScrollDispatcher.invalidate();
+    }
+
+    /**
+     * 获取滑动偏移值的分发器，可以通过它查看收到和实际分发的次数
+     *
+     * @return StickyScrollDispatcher
+     */
+    public StickyScrollDispatcher getScrollDispatcher() {
+        return mScrollDispatcher;
+    }
+
+    @Override
+    public int getPagePosition() {
+        return mPagePosition;
+    }
+
+    @Override
+    public StickyScrollCallback getStickyScrollCallback() {
+        return mStickyScrollCallback;
+    }
+
+    @Override
+    public void setupHeadPlaceHolder(View view) {
+        StickyScrollCallback callback = getStickyScrollCallback();
+        if(callback == null)
+            throw new IllegalStateException("getStickyScrollCallback() return null");
+        ViewGroup.LayoutParams params = view.getLayoutParams();
+        if (params == null) {
+            params = new LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, callback.getHeaderViewHeight());
+        } else {
+            params.height = callback.getHeaderViewHeight();
+        }
+        view.setLayoutParams(params);
+        mHeadPlaceHolder = view;
+        if (mOriginalAdapter != null && mHeaderViewAdapter == null) {
+            setAdapter(mOriginalAdapter);
+        }
+    }
+
+    @Override
+    public void setHeadPlaceHolderHeight(int height) {
+        if (mHeadPlaceHolder == null)
+            return;
+        ViewGroup.LayoutParams params = mHeadPlaceHolder.getLayoutParams();
+        if (params.height == height)
+            return;
+        // 占位View已经滑出屏幕时，RecyclerView保持当前可见的item不动，累计的滑动距离需要加上高度的变化
+        LayoutManager layoutManager = getLayoutManager();
+        if (layoutManager != null && layoutManager.findViewByPosition(0) != mHeadPlaceHolder) {
+            mScrollTop += height - params.height;
+        }
+        params.height = height;
+        mHeadPlaceHolder.setLayoutParams(params);
+    }
+
+    @Override
+    public void adjustPositionByTranslationYOfStickyView(int translationY) {
+        StickyTrace.beginSection("StickyRecyclerView#adjustPosition");
+        try {
+            mScrollDispatcher.invalidate();
+            int stickyViewTop = getStickyScrollCallback().getStickyViewTop();
+            if(!StickyGeometry.needsReposition(translationY, stickyViewTop, getScrollTop()))
+                return;
+            LayoutManager layoutManager = getLayoutManager();
+            if (layoutManager instanceof LinearLayoutManager) {
+                ((LinearLayoutManager) layoutManager).scrollToPositionWithOffset(0, translationY);
+            } else if (layoutManager instanceof StaggeredGridLayoutManager) {
+                ((StaggeredGridLayoutManager) layoutManager).scrollToPositionWithOffset(0, translationY);
+            } else {
+                // 其它LayoutManager没有带偏移的定位，只能回到顶部
+                if (layoutManager != null)
+                    layoutManager.scrollToPosition(0);
+                mScrollTop = 0;
+                return;
+            }
+            mScrollTop = Math.abs(translationY);
+        } finally {
+            StickyTrace.endSection();
+        }
+    }
+
+    @Override
+    public int getScrollTop() {
+        return Math.max(0, mScrollTop);
+    }
+
+    @Override
+    public int getAnchorPosition() {
+        if (mPendingAnchorPosition != NO_POSITION)
+            return mPendingAnchorPosition;
+        View firstView = getChildAt(0);
+        if (firstView == null)
+            return 0;
+        return Math.max(0, getChildAdapterPosition(firstView));
+    }
+
+    @Override
+    public int getAnchorOffset() {
+        if (mPendingAnchorPosition != NO_POSITION)
+            return mPendingAnchorOffset;
+        View firstView = getChildAt(0);
+        LayoutManager layoutManager = getLayoutManager();
+        if (firstView == null || layoutManager == null)
+            return 0;
+        return layoutManager.getDecoratedTop(firstView);
+    }
+
+    @Override
+    public void restoreScrollPosition(int anchorPosition, int anchorOffset, int scrollTop) {
+        mPendingAnchorPosition = anchorPosition;
+        mPendingAnchorOffset = anchorOffset;
+        mPendingScrollTop = scrollTop;
+        applyPendingScrollPosition();
+    }
+
+    /**
+     * LayoutManager只记录要滑动到的位置，在第一次布局时直接定位；累计的滑动距离直接使用保存时的值
+     */
+    private void applyPendingScrollPosition() {
+        LayoutManager layoutManager = getLayoutManager();
+        if (mPendingAnchorPosition == NO_POSITION || getAdapter() == null || layoutManager == null)
+            return;
+        int position = mPendingAnchorPosition;
+        mPendingAnchorPosition = NO_POSITION;
+        if (layoutManager instanceof LinearLayoutManager) {
+            ((LinearLayoutManager) layoutManager).scrollToPositionWithOffset(position, mPendingAnchorOffset);
+        } else if (layoutManager instanceof StaggeredGridLayoutManager) {
+            ((StaggeredGridLayoutManager) layoutManager).scrollToPositionWithOffset(position, mPendingAnchorOffset);
+        } else {
+            layoutManager.scrollToPosition(position);
+        }
+        mScrollTop = mPendingScrollTop;
+    }
+
+    /**
+     * GridLayoutManager里，头部占位View需要占满一整行
+     */
+    private class HeaderSpanSizeLookup extends GridLayoutManager.SpanSizeLookup {
+
+        private final GridLayoutManager mLayoutManager;
+        private final GridLayoutManager.SpanSizeLookup mDelegate;
+
+        public HeaderSpanSizeLookup(GridLayoutManager layoutManager, GridLayoutManager.SpanSizeLookup delegate) {
+            mLayoutManager = layoutManager;
+            mDelegate = delegate;
+        }
+
+        @Override
+        public int getSpanSize(int position) {
+            int headerCount = getHeaderViewCount();
+            if (position < headerCount)
+                return mLayoutManager.getSpanCount();
+            return mDelegate.getSpanSize(position - headerCount);
+        }
+    }
+
+    private static class HeadPlaceHolderViewHolder extends ViewHolder {
+        public HeadPlaceHolderViewHolder(View itemView) {
+            super(itemView);
+        }
+    }
+
+    /**
+     * 包装使用者的Adapter，在position 0的位置插入头部占位View
+     */
+    private class HeaderViewRecyclerAdapter extends Adapter<ViewHolder> {
+
+        private final Adapter<ViewHolder> mAdapter;
+
+        private final AdapterDataObserver mAdapterObserver = new AdapterDataObserver() {
+            @Override
+            public void onChanged() {
+                notifyDataSetChanged();
+            }
+
+            @Override
+            public void onItemRangeChanged(int positionStart, int itemCount) {
+                notifyItemRangeChanged(positionStart + 1, itemCount);
+            }
+
+            @Override
+            public void onItemRangeInserted(int positionStart, int itemCount) {
+                notifyItemRangeInserted(positionStart + 1, itemCount);
+            }
+
+            @Override
+            public void onItemRangeRemoved(int positionStart, int itemCount) {
+                notifyItemRangeRemoved(positionStart + 1, itemCount);
+            }
+
+            @Override
+            public void onItemRangeMoved(int fromPosition, int toPosition, int itemCount) {
+                for (int i = 0; i < itemCount; i++) {
+                    notifyItemMoved(fromPosition + 1 + i, toPosition + 1 + i);
+                }
+            }
+        };
+
+        @SuppressWarnings("unchecked")
+        public HeaderViewRecyclerAdapter(Adapter adapter) {
+            mAdapter = adapter;
+            setHasStableIds(adapter.hasStableIds());
+            mAdapter.registerAdapterDataObserver(mAdapterObserver);
+        }
+
+        /**
+         * 被新的包装替换时调用，否则使用者的Adapter会一直持有旧的包装并继续转发通知
+         */
+        public void release() {
+            mAdapter.unregisterAdapterDataObserver(mAdapterObserver);
+        }
+
+        @Override
+        public int getItemViewType(int position) {
+            if (position == 0)
+                return VIEW_TYPE_HEAD_PLACE_HOLDER;
+            return mAdapter.getItemViewType(position - 1);
+        }
+
+        @Override
+        public ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+            if (viewType == VIEW_TYPE_HEAD_PLACE_HOLDER) {
+                ViewParent oldParent = mHeadPlaceHolder.getParent();
+                if (oldParent instanceof ViewGroup) {
+                    ((ViewGroup) oldParent).removeView(mHeadPlaceHolder);
+                }
+                ViewGroup.LayoutParams params = mHeadPlaceHolder.getLayoutParams();
+                if (getLayoutManager() instanceof StaggeredGridLayoutManager) {
+                    StaggeredGridLayoutManager.LayoutParams lp = new StaggeredGridLayoutManager.LayoutParams(params.width, params.height);
+                    lp.setFullSpan(true);
+                    mHeadPlaceHolder.setLayoutParams(lp);
+                }
+                return new HeadPlaceHolderViewHolder(mHeadPlaceHolder);
+            }
+            return mAdapter.onCreateViewHolder(parent, viewType);
+        }
+
+        @Override
+        public void onBindViewHolder(ViewHolder holder, int position) {
+            if (position == 0)
+                return;
+            mAdapter.onBindViewHolder(holder, position - 1);
+        }
+
+        @Override
+        public long getItemId(int position) {
+            if (position == 0)
+                return NO_ID;
+            return mAdapter.getItemId(position - 1);
+        }
+
+        @Override
+        public int getItemCount() {
+            return mAdapter.getItemCount() + 1;
+        }
+
+        @Override
+        public void onViewRecycled(ViewHolder holder) {
+            if (holder instanceof HeadPlaceHolderViewHolder)
+                return;
+            mAdapter.onViewRecycled(holder);
+        }
+
+        @Override
+        public void onViewAttachedToWindow(ViewHolder holder) {
+            if (holder instanceof HeadPlaceHolderViewHolder)
+                return;
+            mAdapter.onViewAttachedToWindow(holder);
+        }
+
+        @Override
+        public void onViewDetachedFromWindow(ViewHolder holder) {
+            if (holder instanceof HeadPlaceHolderViewHolder)
+                return;
+            mAdapter.onViewDetachedFromWindow(holder);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.hjy.stickyview;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+/**
+ * StickyCoordinator保存的状态：header的偏移值，以及每个页面的滑动位置<br>
+ * 每个页面占用pageStates里连续的4个int：page position、锚点position、锚点偏移、scrollTop
+ */
+public class StickySavedState implements Parcelable {
+
+    static final int PAGE_STATE_SIZE = 4;
+
+    final int headerTranslationY;
+    final int[] pageStates;
+
+    StickySavedState(int headerTranslationY, int[] pageStates) {
+        this.headerTranslationY = headerTranslationY;
+        this.pageStates = pageStates;
+    }
+
+    private StickySavedState(Parcel in) {
+        headerTranslationY = in.readInt();
+        pageStates = in.createIntArray();
+    }
+
+    int getPageCount() {
+        return pageStates.length / PAGE_STATE_SIZE;
+    }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    @Override
+    public void writeToParcel(Parcel dest, int flags) {
+        dest.writeInt(headerTranslationY);
+        dest.writeIntArray(pageStates);
+    }
+
+    public static final Creator<StickySavedState> CREATOR = new Creator<StickySavedState>() {
+        @Override
+        public StickySavedState createFromParcel(Parcel source) {
+            return new StickySavedState(source);
+        }
+
+        @Override
+        public StickySavedState[] newArray(int size) {
+            return new StickySavedState[size];
+        }
+    };
+}
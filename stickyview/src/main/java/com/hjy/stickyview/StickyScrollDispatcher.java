@@ -0,0 +1,175 @@
+package com.hjy.stickyview;
+
+import android.view.Choreographer;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+/**
+ * 负责把IStickyView的滑动偏移值分发给StickyScrollCallback<br>
+ * 1. 和上一次分发的值相同时直接丢弃，例如header已经完全停在顶部时<br>
+ * 2. 同一帧内的多次滑动只在绘制之前分发最后一次的值，每一帧最多回调一次onScrollChanged()<br>
+ * 3. 在绘制过程中滑动的View(ScrollView、WebView的computeScroll())需要在滑动之后自己调用flush()
+ */
+public class StickyScrollDispatcher {
+
+    private final View mView;
+
+    private StickyScrollCallback mPendingCallback;
+    private int mPendingTranslationY;
+    private boolean mHasPending;
+
+    private StickyScrollCallback mLastCallback;
+    private int mLastTranslationY;
+    private boolean mHasDispatched;
+
+    private boolean mAttached;
+    private boolean mFrameScheduled;
+
+    private long mReceivedCount;
+    private long mDispatchedCount;
+
+    private final ViewTreeObserver.OnPreDrawListener mOnPreDrawListener = new ViewTreeObserver.OnPreDrawListener() {
+        @Override
+        public boolean onPreDraw() {
+            flush();
+            return true;
+        }
+    };
+
+    /**
+     * 如果这一帧没有绘制，就在下一帧开始时分发
+     */
+    private final Choreographer.FrameCallback mFrameCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            mFrameScheduled = false;
+            flush();
+        }
+    };
+
+    public StickyScrollDispatcher(View view) {
+        mView = view;
+    }
+
+    /**
+     * 在View的onAttachedToWindow()里调用
+     */
+    public void onAttachedToWindow() {
+        if (mAttached)
+            return;
+        mAttached = true;
+        mView.getViewTreeObserver().addOnPreDrawListener(mOnPreDrawListener);
+    }
+
+    /**
+     * 在View的onDetachedFromWindow()里调用，未分发的值会立即分发
+     */
+    public void onDetachedFromWindow() {
+        if (!mAttached)
+            return;
+        mAttached = false;
+        mView.getViewTreeObserver().removeOnPreDrawListener(mOnPreDrawListener);
+        if (mFrameScheduled) {
+            mFrameScheduled = false;
+            Choreographer.getInstance().removeFrameCallback(mFrameCallback);
+        }
+        flush();
+    }
+
+    /**
+     * 提交一次滑动偏移值，未attach到window时立即分发，否则在绘制前分发
+     *
+     * @param callback     回调
+     * @param translationY sticky view的translationY值
+     */
+    public void dispatchScrollChanged(StickyScrollCallback callback, int translationY) {
+        mReceivedCount++;
+        StickyMetrics.recordScrollEvent();
+        if (!mAttached) {
+            dispatchNow(callback, translationY);
+            return;
+        }
+        mPendingCallback = callback;
+        mPendingTranslationY = translationY;
+        mHasPending = true;
+        if (!mFrameScheduled) {
+            mFrameScheduled = true;
+            Choreographer.getInstance().postFrameCallback(mFrameCallback);
+        }
+    }
+
+    /**
+     * 分发滑动状态，只有StickyScrollStateCallback才会收到<br>
+     * 变为SCROLL_STATE_IDLE时先分发尚未分发的偏移值
+     *
+     * @param callback 回调
+     * @param state    StickyScrollStateCallback里定义的滑动状态
+     */
+    public void dispatchScrollStateChanged(StickyScrollCallback callback, int state) {
+        if (state == StickyScrollStateCallback.SCROLL_STATE_IDLE)
+            flush();
+        if (callback instanceof StickyScrollStateCallback)
+            ((StickyScrollStateCallback) callback).onScrollStateChanged(state);
+    }
+
+    /**
+     * 立即分发尚未分发的值
+     */
+    public void flush() {
+        if (!mHasPending)
+            return;
+        StickyScrollCallback callback = mPendingCallback;
+        mPendingCallback = null;
+        mHasPending = false;
+        dispatchNow(callback, mPendingTranslationY);
+    }
+
+    /**
+     * 清除上一次分发的记录，使得下一次的值一定会被分发<br>
+     * header可能被其它页面移动过时需要调用，例如adjustPositionByTranslationYOfStickyView()里
+     */
+    public void invalidate() {
+        mHasDispatched = false;
+        mLastCallback = null;
+    }
+
+    private void dispatchNow(StickyScrollCallback callback, int translationY) {
+        if (mHasDispatched && mLastCallback == callback && mLastTranslationY == translationY)
+            return;
+        mHasDispatched = true;
+        mLastCallback = callback;
+        mLastTranslationY = translationY;
+        mDispatchedCount++;
+        StickyTrace.beginSection("StickyScrollCallback#onScrollChanged");
+        try {
+            if (StickyMetrics.isEnabled()) {
+                long start = System.nanoTime();
+                callback.onScrollChanged(translationY);
+                StickyMetrics.recordScrollChanged(System.nanoTime() - start);
+            } else {
+                callback.onScrollChanged(translationY);
+            }
+        } finally {
+            StickyTrace.endSection();
+        }
+    }
+
+    /**
+     * @return 收到的滑动事件次数
+     */
+    public long getReceivedCount() {
+        return mReceivedCount;
+    }
+
+    /**
+     * @return 实际回调onScrollChanged()的次数
+     */
+    public long getDispatchedCount() {
+        return mDispatchedCount;
+    }
+
+    public void resetCounters() {
+        mReceivedCount = 0;
+        mDispatchedCount = 0;
+    }
+}
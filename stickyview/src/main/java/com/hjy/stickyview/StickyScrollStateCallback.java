@@ -0,0 +1,30 @@
+package com.hjy.stickyview;
+
+/**
+ * 在StickyScrollCallback的基础上监听当前页面的滑动状态<br>
+ * 状态值和AbsListView.OnScrollListener、RecyclerView的滑动状态一致
+ */
+public interface StickyScrollStateCallback extends StickyScrollCallback {
+
+    /**
+     * 没有滑动
+     */
+    public static final int SCROLL_STATE_IDLE = 0;
+
+    /**
+     * 手指正在拖动
+     */
+    public static final int SCROLL_STATE_DRAGGING = 1;
+
+    /**
+     * 手指离开后的惯性滑动
+     */
+    public static final int SCROLL_STATE_SETTLING = 2;
+
+    /**
+     * 当前页面的滑动状态发生变化
+     *
+     * @param state SCROLL_STATE_IDLE、SCROLL_STATE_DRAGGING或者SCROLL_STATE_SETTLING
+     */
+    public void onScrollStateChanged(int state);
+}
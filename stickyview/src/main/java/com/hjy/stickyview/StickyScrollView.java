@@ -2,12 +2,18 @@ package com.hjy.stickyview;
 
 import android.content.Context;
 import android.util.AttributeSet;
+import android.view.MotionEvent;
 import android.view.View;
+import android.view.ViewConfiguration;
 import android.view.ViewGroup;
+import android.widget.ListAdapter;
 import android.widget.ScrollView;
 
+import com.hjy.stickyview.core.StickyGeometry;
+
 /**
  * Created by hjy on 9/15/15.<br>
+ * 除了包裹完整的布局以外，还可以通过setSectionAdapter()使用虚拟化模式，只添加可见区域附近的section
  */
 public class StickyScrollView extends ScrollView implements IStickyView {
 
@@ -18,6 +24,46 @@ public class StickyScrollView extends ScrollView implements IStickyView {
      */
     private int mPagePosition;
 
+    private final StickyScrollDispatcher mScrollDispatcher = new StickyScrollDispatcher(this);
+
+    /**
+     * ScrollView没有滑动状态的回调，fling结束后超过该时间没有滑动则认为已经停止
+     */
+    private static final long IDLE_DELAY_MS = 100;
+
+    private int mScrollState = StickyScrollStateCallback.SCROLL_STATE_IDLE;
+
+    /**
+     * 手指移动超过该距离才认为开始拖动，点击时的轻微抖动不会把header提升为硬件层
+     */
+    private final int mTouchSlop;
+    private float mDownY;
+
+    /**
+     * 等待第一次布局之后恢复的滑动距离，小于0表示没有
+     */
+    private int mPendingScrollY = -1;
+
+    /**
+     * 虚拟化模式下等待恢复的锚点，小于0表示没有
+     */
+    private int mPendingAnchorPosition = -1;
+    private int mPendingAnchorOffset;
+
+    private View mHeadPlaceHolder;
+
+    /**
+     * 虚拟化模式下唯一的子View，普通模式下为null
+     */
+    private VirtualSectionLayout mSectionLayout;
+
+    private final Runnable mIdleRunnable = new Runnable() {
+        @Override
+        public void run() {
+            setScrollState(StickyScrollStateCallback.SCROLL_STATE_IDLE);
+        }
+    };
+
     public StickyScrollView(Context context) {
         this(context, null);
     }
@@ -29,27 +75,98 @@ public class StickyScrollView extends ScrollView implements IStickyView {
     public StickyScrollView(Context context, AttributeSet attrs, int defStyleAttr) {
         super(context, attrs, defStyleAttr);
         this.setOverScrollMode(OVER_SCROLL_ALWAYS);
+        mTouchSlop = ViewConfiguration.get(context).getScaledTouchSlop();
     }
 
     @Override
     protected void onScrollChanged(int l, int t, int oldl, int oldt) {
         super.onScrollChanged(l, t, oldl, oldt);
+        StickyTrace.beginSection("StickyScrollView#onScrollChanged");
+        try {
+            if(mScrollState == StickyScrollStateCallback.SCROLL_STATE_SETTLING) {
+                removeCallbacks(mIdleRunnable);
+                postDelayed(mIdleRunnable, IDLE_DELAY_MS);
+            }
+            if(mSectionLayout != null)
+                mSectionLayout.fill(t, getHeight());
+            StickyScrollCallback callback = getStickyScrollCallback();
+            if(callback == null)
+                return;
+            if(callback.getCurrentItem() != getPagePosition())
+                return;
+            mScrollDispatcher.dispatchScrollChanged(callback, StickyGeometry.toTranslationY(t, callback.getStickyViewTop()));
+        } finally {
+            StickyTrace.endSection();
+        }
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent ev) {
+        int action = ev.getActionMasked();
+        if(action == MotionEvent.ACTION_DOWN || action == MotionEvent.ACTION_MOVE) {
+            removeCallbacks(mIdleRunnable);
+            if(action == MotionEvent.ACTION_DOWN)
+                mDownY = ev.getY();
+            else if(mScrollState != StickyScrollStateCallback.SCROLL_STATE_DRAGGING && Math.abs(ev.getY() - mDownY) > mTouchSlop)
+                setScrollState(StickyScrollStateCallback.SCROLL_STATE_DRAGGING);
+        }
+        boolean handled = super.onTouchEvent(ev);
+        if(action == MotionEvent.ACTION_UP || action == MotionEvent.ACTION_CANCEL) {
+            // 手指离开时如果触发了fling，fling()里已经设置为SCROLL_STATE_SETTLING
+            if(mScrollState == StickyScrollStateCallback.SCROLL_STATE_DRAGGING)
+                setScrollState(StickyScrollStateCallback.SCROLL_STATE_IDLE);
+        }
+        return handled;
+    }
+
+    @Override
+    public void fling(int velocityY) {
+        super.fling(velocityY);
+        setScrollState(StickyScrollStateCallback.SCROLL_STATE_SETTLING);
+        removeCallbacks(mIdleRunnable);
+        postDelayed(mIdleRunnable, IDLE_DELAY_MS);
+    }
+
+    private void setScrollState(int state) {
+        if(mScrollState == state)
+            return;
+        mScrollState = state;
         StickyScrollCallback callback = getStickyScrollCallback();
         if(callback == null)
             return;
         if(callback.getCurrentItem() != getPagePosition())
             return;
-        int stickyTranslate = t;
-        if(t > callback.getStickyViewTop())
-            stickyTranslate = callback.getStickyViewTop();
-        if(t < 0)
-            stickyTranslate = 0;
-        callback.onScrollChanged(-stickyTranslate);
+        mScrollDispatcher.dispatchScrollStateChanged(callback, state);
     }
 
     @Override
     public void setStickyScrollCallback(StickyScrollCallback stickyScrollCallback) {
         mStickyScrollCallback = stickyScrollCallback;
+        mScrollDispatcher.invalidate();
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        mScrollDispatcher.onAttachedToWindow();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        removeCallbacks(mIdleRunnable);
+        setScrollState(StickyScrollStateCallback.SCROLL_STATE_IDLE);
+        mScrollDispatcher.onDetachedFromWindow();
+    }
+
+    /**
+     * fling时ScrollView在绘制过程中的computeScroll()里移动内容，此时已经过了OnPreDraw，需要立即分发，
+     * 否则header要比内容晚一帧移动
+     */
+    @Override
+    public void computeScroll() {
+        super.computeScroll();
+        mScrollDispatcher.flush();
     }
 
     @Override
@@ -57,6 +174,15 @@ public class StickyScrollView extends ScrollView implements IStickyView {
         mPagePosition = position;
     }
 
+    /**
+     * 获取滑动偏移值的分发器，可以通过它查看收到和实际分发的次数
+     *
+     * @return StickyScrollDispatcher
+     */
+    public StickyScrollDispatcher getScrollDispatcher() {
+        return mScrollDispatcher;
+    }
+
     @Override
     public int getPagePosition() {
         return mPagePosition;
@@ -67,34 +193,142 @@ public class StickyScrollView extends ScrollView implements IStickyView {
         return mStickyScrollCallback;
     }
 
+    /**
+     * 使用虚拟化模式，Adapter的每个item作为一个section，只有和可见区域(加上预加载距离)相交的section才会被添加<br>
+     * 此时StickyScrollView不能再包含其它子View，setupHeadPlaceHolder()的参数也不需要放在布局里
+     *
+     * @param adapter section的Adapter
+     */
+    public void setSectionAdapter(ListAdapter adapter) {
+        ensureSectionLayout().setAdapter(adapter);
+    }
+
+    public ListAdapter getSectionAdapter() {
+        return mSectionLayout != null ? mSectionLayout.getAdapter() : null;
+    }
+
+    /**
+     * 虚拟化模式下，可见区域上下额外添加section的距离
+     *
+     * @param margin 单位为px，小于0时使用可见高度的一半(默认)
+     */
+    public void setSectionPrefetchMargin(int margin) {
+        ensureSectionLayout().setPrefetchMargin(margin);
+    }
+
+    private VirtualSectionLayout ensureSectionLayout() {
+        if(mSectionLayout == null) {
+            if(getChildCount() > 0)
+                throw new IllegalStateException("StickyScrollView already has a child, the virtualized mode hosts its own content");
+            mSectionLayout = new VirtualSectionLayout(getContext());
+            addView(mSectionLayout, new LayoutParams(LayoutParams.MATCH_PARENT, LayoutParams.WRAP_CONTENT));
+        }
+        return mSectionLayout;
+    }
+
+    /**
+     * 普通模式下view必须是所包裹的layout里最前面的View；view还没有父View时使用虚拟化模式，作为第一个section之前的占位
+     */
     @Override
     public void setupHeadPlaceHolder(View view) {
         StickyScrollCallback callback = getStickyScrollCallback();
         if(callback == null)
             throw new IllegalStateException("getStickyScrollCallback() return null");
+        if(view.getParent() == null)
+            ensureSectionLayout().setHeadPlaceHolder(view);
         ViewGroup.LayoutParams params = (ViewGroup.LayoutParams) view.getLayoutParams();
         params.height = callback.getHeaderViewHeight();
         view.setLayoutParams(params);
+        mHeadPlaceHolder = view;
     }
 
     @Override
-    public void adjustPositionByTranslationYOfStickyView(int translationY) {
-        int transY = Math.abs(translationY);
-        int stickyViewTop = getStickyScrollCallback().getStickyViewTop();
-        int scrollHeight = getScrollTop();
+    public void setHeadPlaceHolderHeight(int height) {
+        if(mHeadPlaceHolder == null)
+            return;
+        ViewGroup.LayoutParams params = mHeadPlaceHolder.getLayoutParams();
+        if(params.height == height)
+            return;
+        // 占位View已经滑出屏幕时，保持当前可见的内容不动，在下一次布局后修正滑动距离
+        if(getScrollY() >= params.height)
+            mPendingScrollY = getScrollY() + height - params.height;
+        params.height = height;
+        mHeadPlaceHolder.setLayoutParams(params);
+    }
 
-        if(transY >= stickyViewTop) {
-            if(scrollHeight >= transY)
+    @Override
+    public void adjustPositionByTranslationYOfStickyView(int translationY) {
+        StickyTrace.beginSection("StickyScrollView#adjustPosition");
+        try {
+            mScrollDispatcher.invalidate();
+            int stickyViewTop = getStickyScrollCallback().getStickyViewTop();
+            if(!StickyGeometry.needsReposition(translationY, stickyViewTop, getScrollTop()))
                 return;
-            scrollTo(0, transY);
-        } else {
-            scrollTo(0, transY);
+            scrollTo(0, Math.abs(translationY));
+            invalidate();
+        } finally {
+            StickyTrace.endSection();
         }
-        invalidate();
     }
 
     @Override
     public int getScrollTop() {
         return Math.abs(getScrollY());
     }
+
+    /**
+     * 普通模式下总是返回0；虚拟化模式下返回scrollY所在的位置，0表示头部占位View，其余为section + 1
+     */
+    @Override
+    public int getAnchorPosition() {
+        if(mSectionLayout == null)
+            return 0;
+        if(mPendingAnchorPosition >= 0)
+            return mPendingAnchorPosition;
+        return mSectionLayout.getAnchorPosition(getScrollY());
+    }
+
+    @Override
+    public int getAnchorOffset() {
+        if(mSectionLayout == null)
+            return mPendingScrollY >= 0 ? -mPendingScrollY : -getScrollY();
+        if(mPendingAnchorPosition >= 0)
+            return mPendingAnchorOffset;
+        return mSectionLayout.getAnchorTop(getAnchorPosition()) - getScrollY();
+    }
+
+    /**
+     * 还没有布局时，内容的高度为0，scrollTo()会被限制为0，所以等到onLayout()之后再恢复<br>
+     * 虚拟化模式下锚点之前的section还没有测量，按保存时的锚点位置估算它们的高度，使得恢复后getScrollTop()和保存时一致
+     */
+    @Override
+    public void restoreScrollPosition(int anchorPosition, int anchorOffset, int scrollTop) {
+        if(getHeight() > 0 && !isLayoutRequested()) {
+            mPendingScrollY = -1;
+            if(mSectionLayout != null)
+                mSectionLayout.restoreAnchor(anchorPosition, scrollTop + anchorOffset);
+            scrollTo(0, scrollTop);
+            if(mSectionLayout != null)
+                mSectionLayout.fill(getScrollY(), getHeight());
+        } else {
+            mPendingScrollY = scrollTop;
+            mPendingAnchorPosition = anchorPosition;
+            mPendingAnchorOffset = anchorOffset;
+        }
+    }
+
+    @Override
+    protected void onLayout(boolean changed, int l, int t, int r, int b) {
+        super.onLayout(changed, l, t, r, b);
+        if(mPendingScrollY >= 0) {
+            int scrollY = mPendingScrollY;
+            mPendingScrollY = -1;
+            if(mSectionLayout != null && mPendingAnchorPosition >= 0)
+                mSectionLayout.restoreAnchor(mPendingAnchorPosition, scrollY + mPendingAnchorOffset);
+            mPendingAnchorPosition = -1;
+            scrollTo(0, scrollY);
+            if(mSectionLayout != null)
+                mSectionLayout.fill(getScrollY(), getHeight());
+        }
+    }
 }
\ No newline at end of file
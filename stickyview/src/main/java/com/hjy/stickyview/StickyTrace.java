@@ -0,0 +1,44 @@
+package com.hjy.stickyview;
+
+import android.os.Build;
+import android.os.Trace;
+import android.util.Log;
+
+/**
+ * 滑动路径上的systrace区段和调试日志<br>
+ * 是否开启由编译时的BuildConfig.STICKY_TRACE决定(./gradlew -PstickyTrace)，关闭时javac只会去掉方法里被ENABLED保护的部分，<br>
+ * 调用本身以及区段名的字符串常量仍然保留，只剩下一次空方法调用；日志用StickyTrace.ENABLED判断后再拼接字符串
+ */
+final class StickyTrace {
+
+    static final boolean ENABLED = BuildConfig.STICKY_TRACE;
+
+    private static final String TAG = "StickyView";
+
+    private StickyTrace() {
+    }
+
+    /**
+     * android.os.Trace需要API 18
+     */
+    static void beginSection(String sectionName) {
+        if (ENABLED && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            Trace.beginSection(sectionName);
+        }
+    }
+
+    static void endSection() {
+        if (ENABLED && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            Trace.endSection();
+        }
+    }
+
+    /**
+     * 调用处需要先判断ENABLED，避免拼接字符串
+     */
+    static void log(String msg) {
+        if (ENABLED) {
+            Log.d(TAG, msg);
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package com.hjy.stickyview;
+
+import android.content.Context;
+import android.os.Build;
+import android.util.AttributeSet;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewConfiguration;
+import android.webkit.WebView;
+import android.webkit.WebViewClient;
+
+import com.hjy.stickyview.core.StickyGeometry;
+
+/**
+ * 直接使用WebView作为sticky页面，不需要再把WebView放进StickyScrollView里<br>
+ * 放在ScrollView里时WebView的高度等于整个网页的高度，会一次绘制出整个网页，占用大量内存；
+ * 这里由WebView自己滑动，仍然只渲染可见区域<br>
+ * header的占位通过给网页的body设置padding-top实现，因此需要开启JavaScript，
+ * 自定义WebViewClient时需要继承StickyWebViewClient，以便每个网页加载完成后重新设置padding
+ */
+public class StickyWebView extends WebView implements IStickyView {
+
+    private StickyScrollCallback mStickyScrollCallback;
+
+    /**
+     * 所在page的position，如果有多个page共同协作使用一个sticky view，则必须设置该值
+     */
+    private int mPagePosition;
+
+    private final StickyScrollDispatcher mScrollDispatcher = new StickyScrollDispatcher(this);
+
+    /**
+     * WebView没有滑动状态的回调，手指离开后超过该时间没有滑动则认为已经停止
+     */
+    private static final long IDLE_DELAY_MS = 100;
+
+    private int mScrollState = StickyScrollStateCallback.SCROLL_STATE_IDLE;
+
+    /**
+     * 手指移动超过该距离才认为开始拖动，点击时的轻微抖动不会把header提升为硬件层
+     */
+    private final int mTouchSlop;
+    private float mDownY;
+
+    /**
+     * 网页内容顶部预留的高度，单位为px，小于0表示还没有调用setupHeadPlaceHolder()
+     */
+    private int mPlaceholderHeight = -1;
+
+    /**
+     * 等待网页加载完成之后恢复的滑动距离，小于0表示没有
+     */
+    private int mPendingScrollY = -1;
+
+    private final Runnable mIdleRunnable = new Runnable() {
+        @Override
+        public void run() {
+            setScrollState(StickyScrollStateCallback.SCROLL_STATE_IDLE);
+        }
+    };
+
+    /**
+     * 网页加载完成后重新设置占位的padding，并恢复等待中的滑动位置
+     */
+    public static class StickyWebViewClient extends WebViewClient {
+
+        @Override
+        public void onPageFinished(WebView view, String url) {
+            super.onPageFinished(view, url);
+            if (view instanceof StickyWebView)
+                ((StickyWebView) view).onPageFinished();
+        }
+    }
+
+    public StickyWebView(Context context) {
+        this(context, null);
+    }
+
+    public StickyWebView(Context context, AttributeSet attrs) {
+        this(context, attrs, android.R.attr.webViewStyle);
+    }
+
+    public StickyWebView(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+        setWebViewClient(new StickyWebViewClient());
+        mTouchSlop = ViewConfiguration.get(context).getScaledTouchSlop();
+    }
+
+    @Override
+    protected void onScrollChanged(int l, int t, int oldl, int oldt) {
+        super.onScrollChanged(l, t, oldl, oldt);
+        StickyTrace.beginSection("StickyWebView#onScrollChanged");
+        try {
+            if(mScrollState == StickyScrollStateCallback.SCROLL_STATE_SETTLING) {
+                removeCallbacks(mIdleRunnable);
+                postDelayed(mIdleRunnable, IDLE_DELAY_MS);
+            }
+            StickyScrollCallback callback = getStickyScrollCallback();
+            if(callback == null)
+                return;
+            if(callback.getCurrentItem() != getPagePosition())
+                return;
+            mScrollDispatcher.dispatchScrollChanged(callback, StickyGeometry.toTranslationY(t, callback.getStickyViewTop()));
+        } finally {
+            StickyTrace.endSection();
+        }
+    }
+
+    /**
+     * WebView的fling不经过fling()，手指离开后先认为处于SCROLL_STATE_SETTLING，直到一段时间内不再滑动
+     */
+    @Override
+    public boolean onTouchEvent(MotionEvent ev) {
+        int action = ev.getActionMasked();
+        if(action == MotionEvent.ACTION_DOWN || action == MotionEvent.ACTION_MOVE) {
+            removeCallbacks(mIdleRunnable);
+            if(action == MotionEvent.ACTION_DOWN)
+                mDownY = ev.getY();
+            else if(mScrollState != StickyScrollStateCallback.SCROLL_STATE_DRAGGING && Math.abs(ev.getY() - mDownY) > mTouchSlop)
+                setScrollState(StickyScrollStateCallback.SCROLL_STATE_DRAGGING);
+        }
+        boolean handled = super.onTouchEvent(ev);
+        if(action == MotionEvent.ACTION_UP || action == MotionEvent.ACTION_CANCEL) {
+            if(mScrollState == StickyScrollStateCallback.SCROLL_STATE_DRAGGING) {
+                setScrollState(StickyScrollStateCallback.SCROLL_STATE_SETTLING);
+                postDelayed(mIdleRunnable, IDLE_DELAY_MS);
+            }
+        }
+        return handled;
+    }
+
+    private void setScrollState(int state) {
+        if(mScrollState == state)
+            return;
+        mScrollState = state;
+        StickyScrollCallback callback = getStickyScrollCallback();
+        if(callback == null)
+            return;
+        if(callback.getCurrentItem() != getPagePosition())
+            return;
+        mScrollDispatcher.dispatchScrollStateChanged(callback, state);
+    }
+
+    @Override
+    public void setStickyScrollCallback(StickyScrollCallback stickyScrollCallback) {
+        mStickyScrollCallback = stickyScrollCallback;
+        mScrollDispatcher.invalidate();
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        mScrollDispatcher.onAttachedToWindow();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        removeCallbacks(mIdleRunnable);
+        setScrollState(StickyScrollStateCallback.SCROLL_STATE_IDLE);
+        mScrollDispatcher.onDetachedFromWindow();
+    }
+
+    /**
+     * fling时WebView在绘制过程中的computeScroll()里移动内容，此时已经过了OnPreDraw，需要立即分发，
+     * 否则header要比内容晚一帧移动
+     */
+    @Override
+    public void computeScroll() {
+        super.computeScroll();
+        mScrollDispatcher.flush();
+    }
+
+    @Override
+    public void setPagePosition(int position) {
+        mPagePosition = position;
+    }
+
+    /**
+     * 获取滑动偏移值的分发器，可以通过它查看收到和实际分发的次数
+     *
+     * @return StickyScrollDispatcher
+     */
+    public StickyScrollDispatcher getScrollDispatcher() {
+        return mScrollDispatcher;
+    }
+
+    @Override
+    public int getPagePosition() {
+        return mPagePosition;
+    }
+
+    @Override
+    public StickyScrollCallback getStickyScrollCallback() {
+        return mStickyScrollCallback;
+    }
+
+    /**
+     * WebView不添加占位View，而是给网页内容设置header高度的padding-top
+     *
+     * @param view 不会被使用，可以为null
+     */
+    @Override
+    public void setupHeadPlaceHolder(View view) {
+        StickyScrollCallback callback = getStickyScrollCallback();
+        if(callback == null)
+            throw new IllegalStateException("getStickyScrollCallback() return null");
+        mPlaceholderHeight = callback.getHeaderViewHeight();
+        evaluateScript(buildPaddingScript());
+    }
+
+    /**
+     * 修改padding的同时在网页里滑动相同的距离，占位已经滑出屏幕时可见的内容保持不动
+     */
+    @Override
+    public void setHeadPlaceHolderHeight(int height) {
+        if(mPlaceholderHeight < 0 || mPlaceholderHeight == height)
+            return;
+        int oldHeight = mPlaceholderHeight;
+        mPlaceholderHeight = height;
+        StringBuilder script = buildPaddingScript();
+        if(getScrollY() >= oldHeight)
+            script.append("window.scrollBy(0,").append(toCssPixels(height - oldHeight)).append(");");
+        evaluateScript(script);
+    }
+
+    @Override
+    public void adjustPositionByTranslationYOfStickyView(int translationY) {
+        StickyTrace.beginSection("StickyWebView#adjustPosition");
+        try {
+            mScrollDispatcher.invalidate();
+            int stickyViewTop = getStickyScrollCallback().getStickyViewTop();
+            if(!StickyGeometry.needsReposition(translationY, stickyViewTop, getScrollTop()))
+                return;
+            scrollTo(0, Math.abs(translationY));
+        } finally {
+            StickyTrace.endSection();
+        }
+    }
+
+    @Override
+    public int getScrollTop() {
+        return Math.abs(getScrollY());
+    }
+
+    @Override
+    public int getAnchorPosition() {
+        return 0;
+    }
+
+    @Override
+    public int getAnchorOffset() {
+        if(mPendingScrollY >= 0)
+            return -mPendingScrollY;
+        return -getScrollY();
+    }
+
+    /**
+     * 网页还没有加载完成时内容高度不够，scrollTo()会被限制，所以等到onPageFinished()之后再恢复
+     */
+    @Override
+    public void restoreScrollPosition(int anchorPosition, int anchorOffset, int scrollTop) {
+        if(getContentHeight() > 0 && getProgress() == 100) {
+            mPendingScrollY = -1;
+            scrollTo(0, scrollTop);
+        } else {
+            mPendingScrollY = scrollTop;
+        }
+    }
+
+    /**
+     * 由StickyWebViewClient在每个网页加载完成后调用
+     */
+    void onPageFinished() {
+        if(mPlaceholderHeight < 0)
+            return;
+        StringBuilder script = buildPaddingScript();
+        if(mPendingScrollY >= 0) {
+            script.append("window.scrollTo(0,").append(toCssPixels(mPendingScrollY)).append(");");
+            mPendingScrollY = -1;
+        }
+        evaluateScript(script);
+    }
+
+    private StringBuilder buildPaddingScript() {
+        StringBuilder script = new StringBuilder();
+        script.append("if(document.body)document.body.style.paddingTop='")
+                .append(toCssPixels(mPlaceholderHeight)).append("px';");
+        return script;
+    }
+
+    /**
+     * 网页按device-width排版时，1个css像素等于density个物理像素
+     */
+    private float toCssPixels(int px) {
+        return px / getResources().getDisplayMetrics().density;
+    }
+
+    private void evaluateScript(CharSequence script) {
+        if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            evaluateJavascript(script.toString(), null);
+        } else {
+            loadUrl("javascript:" + script + "void(0);");
+        }
+    }
+}
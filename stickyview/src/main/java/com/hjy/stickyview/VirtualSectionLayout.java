@@ -0,0 +1,300 @@
+package com.hjy.stickyview;
+
+import android.content.Context;
+import android.database.DataSetObserver;
+import android.util.SparseArray;
+import android.util.SparseIntArray;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.Adapter;
+import android.widget.ListAdapter;
+
+import com.hjy.stickyview.core.ItemHeightIndex;
+
+import java.util.ArrayList;
+
+/**
+ * StickyScrollView虚拟化模式下唯一的子View，最上面是头部占位View，下面是Adapter提供的section<br>
+ * 只添加和可见区域(加上预加载距离)相交的section，滑出范围的section按view type回收复用<br>
+ * 内容总高度 = 头部占位高度 + 所有section的高度之和，未测量的section按已测量section的平均高度估算；
+ * section测量后高度和估算值不同时，调整ScrollView的滑动距离，使得可见的内容保持不动
+ */
+class VirtualSectionLayout extends ViewGroup {
+
+    private ListAdapter mAdapter;
+
+    private View mHeadPlaceHolder;
+    private int mHeadPlaceHolderHeight;
+
+    private final ItemHeightIndex mSectionHeights = new ItemHeightIndex();
+
+    /**
+     * 以section为key保存已添加的View，key总是连续的
+     */
+    private final SparseArray<View> mAttachedViews = new SparseArray<View>();
+
+    /**
+     * 已添加View的view type，数据变化之后Adapter返回的可能已经不是这个View的type
+     */
+    private final SparseIntArray mAttachedViewTypes = new SparseIntArray();
+
+    /**
+     * 以view type为key保存回收的View
+     */
+    private final SparseArray<ArrayList<View>> mScrapViews = new SparseArray<ArrayList<View>>();
+
+    /**
+     * 可见区域上下额外添加section的距离，小于0时使用可见高度的一半
+     */
+    private int mPrefetchMargin = -1;
+
+    private boolean mInFill;
+
+    private final DataSetObserver mDataSetObserver = new DataSetObserver() {
+        @Override
+        public void onChanged() {
+            recycleAll();
+            // 保留已测量的高度作为估算值，重新添加时会再次测量
+            mSectionHeights.resize(mAdapter.getCount());
+            requestLayout();
+        }
+
+        @Override
+        public void onInvalidated() {
+            recycleAll();
+            mSectionHeights.reset(mAdapter.getCount());
+            requestLayout();
+        }
+    };
+
+    VirtualSectionLayout(Context context) {
+        super(context);
+    }
+
+    void setAdapter(ListAdapter adapter) {
+        if (mAdapter != null)
+            mAdapter.unregisterDataSetObserver(mDataSetObserver);
+        recycleAll();
+        mScrapViews.clear();
+        mAdapter = adapter;
+        mSectionHeights.reset(adapter != null ? adapter.getCount() : 0);
+        if (adapter != null)
+            adapter.registerDataSetObserver(mDataSetObserver);
+        requestLayout();
+    }
+
+    ListAdapter getAdapter() {
+        return mAdapter;
+    }
+
+    void setHeadPlaceHolder(View view) {
+        if (mHeadPlaceHolder != null)
+            removeView(mHeadPlaceHolder);
+        mHeadPlaceHolder = view;
+        addView(view, 0, new LayoutParams(LayoutParams.MATCH_PARENT, 0));
+    }
+
+    void setPrefetchMargin(int margin) {
+        mPrefetchMargin = margin;
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        int width = MeasureSpec.getSize(widthMeasureSpec);
+        if (mHeadPlaceHolder != null) {
+            measureSection(mHeadPlaceHolder, width);
+            mHeadPlaceHolderHeight = mHeadPlaceHolder.getMeasuredHeight();
+        }
+        // 宽度可能变化，已添加的section重新测量
+        for (int i = 0, size = mAttachedViews.size(); i < size; i++) {
+            View child = mAttachedViews.valueAt(i);
+            measureSection(child, width);
+            mSectionHeights.setHeight(mAttachedViews.keyAt(i), child.getMeasuredHeight());
+        }
+        setMeasuredDimension(width, getContentHeight());
+    }
+
+    @Override
+    protected void onLayout(boolean changed, int l, int t, int r, int b) {
+        if (mHeadPlaceHolder != null)
+            mHeadPlaceHolder.layout(0, 0, r - l, mHeadPlaceHolderHeight);
+        View parent = (View) getParent();
+        fill(parent.getScrollY(), parent.getHeight());
+    }
+
+    /**
+     * 添加scrollY附近的section，回收范围以外的section，并修正估算高度带来的偏差<br>
+     * ScrollView每次滑动和布局时调用
+     *
+     * @param scrollY        ScrollView的滑动距离
+     * @param viewportHeight ScrollView的可见高度
+     */
+    void fill(int scrollY, int viewportHeight) {
+        if (mAdapter == null || mInFill)
+            return;
+        mInFill = true;
+        StickyTrace.beginSection("VirtualSectionLayout#fill");
+        try {
+            // 记录scrollY所在section当前的位置，测量之后它的位置可能变化
+            int anchorSection = -1;
+            int anchorTop = 0;
+            for (int i = 0, size = mAttachedViews.size(); i < size; i++) {
+                View child = mAttachedViews.valueAt(i);
+                if (child.getTop() <= scrollY && child.getBottom() > scrollY) {
+                    anchorSection = mAttachedViews.keyAt(i);
+                    anchorTop = child.getTop();
+                    break;
+                }
+            }
+
+            int margin = mPrefetchMargin >= 0 ? mPrefetchMargin : viewportHeight / 2;
+            int top = scrollY - margin - mHeadPlaceHolderHeight;
+            int bottom = scrollY + viewportHeight + margin - mHeadPlaceHolderHeight;
+            int count = mSectionHeights.size();
+            int first = mSectionHeights.findPosition(Math.max(top, 0));
+            int last = first - 1;
+            if (count > 0 && bottom > 0) {
+                recycleOutside(first, Integer.MAX_VALUE);
+                int offset = mSectionHeights.getOffset(first);
+                while (last + 1 < count && offset < bottom) {
+                    last++;
+                    offset += obtainSection(last).getMeasuredHeight();
+                }
+            }
+            recycleOutside(first, last);
+
+            int width = getWidth();
+            int sectionTop = mHeadPlaceHolderHeight + mSectionHeights.getOffset(first);
+            for (int section = first; section <= last; section++) {
+                View child = mAttachedViews.get(section);
+                int height = child.getMeasuredHeight();
+                if (child.getTop() != sectionTop || child.getHeight() != height || child.getWidth() != width)
+                    child.layout(0, sectionTop, width, sectionTop + height);
+                sectionTop += height;
+            }
+
+            int contentHeight = getContentHeight();
+            if (getHeight() != contentHeight) {
+                // ScrollView按子View的高度限制滑动范围，立即修改，不需要等待下一次布局
+                setBottom(getTop() + contentHeight);
+            }
+            invalidate();
+
+            if (anchorSection >= 0 && anchorSection >= first && anchorSection <= last) {
+                int delta = mAttachedViews.get(anchorSection).getTop() - anchorTop;
+                if (delta != 0)
+                    ((View) getParent()).scrollBy(0, delta);
+            }
+        } finally {
+            StickyTrace.endSection();
+            mInFill = false;
+        }
+    }
+
+    /**
+     * 获取scrollY所在的位置，0表示头部占位View，其余为section + 1
+     */
+    int getAnchorPosition(int scrollY) {
+        if (scrollY < mHeadPlaceHolderHeight || mSectionHeights.size() == 0)
+            return 0;
+        return mSectionHeights.findPosition(scrollY - mHeadPlaceHolderHeight) + 1;
+    }
+
+    /**
+     * 获取getAnchorPosition()的顶部位置
+     */
+    int getAnchorTop(int anchorPosition) {
+        if (anchorPosition <= 0)
+            return 0;
+        return mHeadPlaceHolderHeight + mSectionHeights.getOffset(anchorPosition - 1);
+    }
+
+    /**
+     * 恢复滑动位置时，把anchorPosition之前还没有测量的高度平均分配，使得它的顶部位置等于anchorTop
+     */
+    void restoreAnchor(int anchorPosition, int anchorTop) {
+        if (anchorPosition <= 1)
+            return;
+        // 已添加的section位置都会变化，全部回收，避免fill()把位置变化当作测量误差去修正滑动距离
+        recycleAll();
+        mSectionHeights.distributeHeight(0, anchorPosition - 1, anchorTop - mHeadPlaceHolderHeight);
+        int contentHeight = getContentHeight();
+        if (getHeight() != contentHeight)
+            setBottom(getTop() + contentHeight);
+    }
+
+    private int getContentHeight() {
+        return mHeadPlaceHolderHeight + mSectionHeights.getOffset(mSectionHeights.size());
+    }
+
+    private View obtainSection(int section) {
+        View child = mAttachedViews.get(section);
+        if (child != null)
+            return child;
+        int viewType = mAdapter.getItemViewType(section);
+        ArrayList<View> scrap = mScrapViews.get(viewType);
+        View convertView = scrap != null && !scrap.isEmpty() ? scrap.remove(scrap.size() - 1) : null;
+        child = mAdapter.getView(section, convertView, this);
+        LayoutParams params = child.getLayoutParams();
+        if (params == null) {
+            params = generateDefaultLayoutParams();
+        } else if (!checkLayoutParams(params)) {
+            params = generateLayoutParams(params);
+        }
+        addViewInLayout(child, -1, params, true);
+        mAttachedViews.put(section, child);
+        mAttachedViewTypes.put(section, viewType);
+        measureSection(child, getMeasuredWidth());
+        mSectionHeights.setHeight(section, child.getMeasuredHeight());
+        return child;
+    }
+
+    /**
+     * 回收[first, last]以外的section
+     */
+    private void recycleOutside(int first, int last) {
+        for (int i = mAttachedViews.size() - 1; i >= 0; i--) {
+            int section = mAttachedViews.keyAt(i);
+            if (section >= first && section <= last)
+                continue;
+            recycle(section, mAttachedViews.valueAt(i));
+            mAttachedViews.removeAt(i);
+            mAttachedViewTypes.delete(section);
+        }
+    }
+
+    private void recycleAll() {
+        for (int i = mAttachedViews.size() - 1; i >= 0; i--) {
+            recycle(mAttachedViews.keyAt(i), mAttachedViews.valueAt(i));
+        }
+        mAttachedViews.clear();
+        mAttachedViewTypes.clear();
+        invalidate();
+    }
+
+    private void recycle(int section, View child) {
+        removeViewInLayout(child);
+        int viewType = mAttachedViewTypes.get(section, Adapter.IGNORE_ITEM_VIEW_TYPE);
+        if (viewType == Adapter.IGNORE_ITEM_VIEW_TYPE)
+            return;
+        ArrayList<View> scrap = mScrapViews.get(viewType);
+        if (scrap == null) {
+            scrap = new ArrayList<View>();
+            mScrapViews.put(viewType, scrap);
+        }
+        scrap.add(child);
+    }
+
+    private void measureSection(View child, int width) {
+        LayoutParams params = child.getLayoutParams();
+        int heightMeasureSpec = params != null && params.height >= 0
+                ? MeasureSpec.makeMeasureSpec(params.height, MeasureSpec.EXACTLY)
+                : MeasureSpec.makeMeasureSpec(0, MeasureSpec.UNSPECIFIED);
+        child.measure(MeasureSpec.makeMeasureSpec(width, MeasureSpec.EXACTLY), heightMeasureSpec);
+    }
+
+    @Override
+    protected LayoutParams generateDefaultLayoutParams() {
+        return new LayoutParams(LayoutParams.MATCH_PARENT, LayoutParams.WRAP_CONTENT);
+    }
+}
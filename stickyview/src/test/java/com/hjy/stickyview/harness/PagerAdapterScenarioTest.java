@@ -0,0 +1,233 @@
+package com.hjy.stickyview.harness;
+
+import android.app.Activity;
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.support.v4.view.ViewPager;
+import android.util.AttributeSet;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.AbsListView;
+import android.widget.BaseAdapter;
+import android.widget.FrameLayout;
+import android.widget.LinearLayout;
+import android.widget.ScrollView;
+
+import com.hjy.stickyview.BuildConfig;
+import com.hjy.stickyview.IStickyView;
+import com.hjy.stickyview.PlaceholderView;
+import com.hjy.stickyview.StickyCoordinator;
+import com.hjy.stickyview.StickyGridView;
+import com.hjy.stickyview.StickyListView;
+import com.hjy.stickyview.StickyPagerAdapter;
+import com.hjy.stickyview.StickyScrollView;
+import com.hjy.stickyview.core.StickyGeometry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * 通过StickyPagerAdapter在真实的ViewPager里创建ListView、GridView、ScrollView三个页面，
+ * 拖动第一个页面后切换到ScrollView页面，检查页面的注册、占位View以及header的偏移<br>
+ * 库里没有布局资源，页面布局使用系统的expandable_list_content，inflate时由LayoutInflater.Factory替换为对应的页面
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21, packageName = "com.hjy.stickyview")
+public class PagerAdapterScenarioTest {
+
+    private static final int PAGE_COUNT = 3;
+
+    private FrameLayout mRoot;
+
+    @Test
+    public void buildsPagesAndSyncsHeader() {
+        Activity activity = Robolectric.setupActivity(Activity.class);
+        PageContext context = new PageContext(activity);
+        mRoot = new FrameLayout(activity);
+        View headerView = new LinearLayout(activity);
+        StickyCoordinator coordinator = new StickyCoordinator(headerView, ScrollSimulationHarness.HEADER_HEIGHT,
+                ScrollSimulationHarness.STICKY_VIEW_TOP);
+
+        ViewPager viewPager = new ViewPager(activity);
+        viewPager.setOffscreenPageLimit(PAGE_COUNT - 1);
+        coordinator.attachToViewPager(viewPager);
+        TestPagerAdapter adapter = new TestPagerAdapter(context, coordinator);
+        adapter.setAsyncInflateEnabled(false);
+        viewPager.setAdapter(adapter);
+
+        mRoot.addView(viewPager, new FrameLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+        mRoot.addView(headerView, new FrameLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ScrollSimulationHarness.HEADER_HEIGHT));
+        activity.setContentView(mRoot);
+        ShadowLooper.pauseMainLooper();
+        frame();
+
+        for (int position = 0; position < PAGE_COUNT; position++) {
+            assertNotNull("page " + position, adapter.getPageView(position));
+            assertSame("page " + position, coordinator.getPage(position), context.mPages[position]);
+        }
+        assertEquals(ScrollSimulationHarness.HEADER_HEIGHT, context.mScrollPlaceholder.getLayoutParams().height);
+
+        ((AbsListView) context.mPages[ScrollSimulationHarness.PAGE_LIST]).scrollListBy(ScrollSimulationHarness.HEADER_HEIGHT);
+        frame();
+        assertEquals(-ScrollSimulationHarness.STICKY_VIEW_TOP, coordinator.getHeaderTranslationY());
+
+        viewPager.setCurrentItem(ScrollSimulationHarness.PAGE_SCROLL, false);
+        frame();
+        IStickyView scrollPage = context.mPages[ScrollSimulationHarness.PAGE_SCROLL];
+        assertEquals(StickyGeometry.toTranslationY(scrollPage.getScrollTop(), ScrollSimulationHarness.STICKY_VIEW_TOP),
+                coordinator.getHeaderTranslationY());
+    }
+
+    private void frame() {
+        if (mRoot.isLayoutRequested()) {
+            mRoot.measure(View.MeasureSpec.makeMeasureSpec(ScrollSimulationHarness.VIEWPORT_WIDTH, View.MeasureSpec.EXACTLY),
+                    View.MeasureSpec.makeMeasureSpec(ScrollSimulationHarness.VIEWPORT_HEIGHT, View.MeasureSpec.EXACTLY));
+            mRoot.layout(0, 0, ScrollSimulationHarness.VIEWPORT_WIDTH, ScrollSimulationHarness.VIEWPORT_HEIGHT);
+        }
+        mRoot.getViewTreeObserver().dispatchOnPreDraw();
+        ShadowLooper.idleMainLooper(ScrollSimulationHarness.FRAME_INTERVAL_MS);
+    }
+
+    private static class TestPagerAdapter extends StickyPagerAdapter {
+
+        private final PageContext mContext;
+
+        TestPagerAdapter(PageContext context, StickyCoordinator stickyCoordinator) {
+            super(context, stickyCoordinator);
+            mContext = context;
+        }
+
+        @Override
+        public int getCount() {
+            return PAGE_COUNT;
+        }
+
+        @Override
+        protected int getPageLayoutId(int position) {
+            mContext.mInflatingPosition = position;
+            return android.R.layout.expandable_list_content;
+        }
+
+        @Override
+        protected IStickyView onCreateStickyView(int position, View pageView) {
+            return (IStickyView) pageView;
+        }
+
+        @Override
+        protected View onCreateHeadPlaceHolder(int position, View pageView, IStickyView stickyView) {
+            if (position == ScrollSimulationHarness.PAGE_SCROLL)
+                return mContext.mScrollPlaceholder;
+            return super.onCreateHeadPlaceHolder(position, pageView, stickyView);
+        }
+
+        @Override
+        protected void onBindPage(int position, View pageView, IStickyView stickyView) {
+            if (stickyView instanceof AbsListView)
+                ((AbsListView) stickyView).setAdapter(new ItemAdapter(ScrollSimulationHarness.ITEM_COUNT));
+        }
+    }
+
+    /**
+     * 替换LayoutInflater，把布局的根View换成mInflatingPosition对应的页面
+     */
+    private static class PageContext extends ContextWrapper implements LayoutInflater.Factory {
+
+        final IStickyView[] mPages = new IStickyView[PAGE_COUNT];
+        PlaceholderView mScrollPlaceholder;
+        int mInflatingPosition;
+
+        private LayoutInflater mInflater;
+
+        PageContext(Context base) {
+            super(base);
+        }
+
+        @Override
+        public Object getSystemService(String name) {
+            if (LAYOUT_INFLATER_SERVICE.equals(name)) {
+                if (mInflater == null) {
+                    mInflater = LayoutInflater.from(getBaseContext()).cloneInContext(this);
+                    mInflater.setFactory(this);
+                }
+                return mInflater;
+            }
+            return super.getSystemService(name);
+        }
+
+        @Override
+        public View onCreateView(String name, Context context, AttributeSet attrs) {
+            if (!"ExpandableListView".equals(name))
+                return null;
+            View page = createPage(mInflatingPosition);
+            mPages[mInflatingPosition] = (IStickyView) page;
+            return page;
+        }
+
+        private View createPage(int position) {
+            switch (position) {
+                case ScrollSimulationHarness.PAGE_LIST:
+                    return new StickyListView(this);
+                case ScrollSimulationHarness.PAGE_GRID: {
+                    StickyGridView gridView = new StickyGridView(this);
+                    gridView.setNumColumns(ScrollSimulationHarness.NUM_COLUMNS);
+                    return gridView;
+                }
+                default: {
+                    // 普通的ScrollView页面，占位View是内容的第一个View
+                    StickyScrollView scrollView = new StickyScrollView(this);
+                    LinearLayout content = new LinearLayout(this);
+                    content.setOrientation(LinearLayout.VERTICAL);
+                    mScrollPlaceholder = new PlaceholderView(this);
+                    content.addView(mScrollPlaceholder, new LinearLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, 0));
+                    content.addView(new View(this), new LinearLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT,
+                            ScrollSimulationHarness.SCROLL_CONTENT_HEIGHT));
+                    scrollView.addView(content, new ScrollView.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT));
+                    return scrollView;
+                }
+            }
+        }
+    }
+
+    private static class ItemAdapter extends BaseAdapter {
+
+        private final int mCount;
+
+        ItemAdapter(int count) {
+            mCount = count;
+        }
+
+        @Override
+        public int getCount() {
+            return mCount;
+        }
+
+        @Override
+        public Object getItem(int position) {
+            return null;
+        }
+
+        @Override
+        public long getItemId(int position) {
+            return position;
+        }
+
+        @Override
+        public View getView(int position, View convertView, ViewGroup parent) {
+            View view = convertView;
+            if (view == null) {
+                view = new View(parent.getContext());
+                view.setLayoutParams(new AbsListView.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ScrollSimulationHarness.ITEM_HEIGHT));
+            }
+            return view;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.hjy.stickyview.harness;
+
+/**
+ * 一个滑动场景的统计结果
+ */
+public class ScenarioResult {
+
+    public final String name;
+
+    /**
+     * 模拟的帧数
+     */
+    public int frames;
+
+    /**
+     * StickyScrollCallback.onScrollChanged()被调用的次数
+     */
+    public int scrollChangedCalls;
+
+    /**
+     * 所有页面以及header的onLayout()次数
+     */
+    public int layoutPasses;
+    public int maxLayoutPassesPerFrame;
+
+    /**
+     * 所有页面Adapter.getView()的次数
+     */
+    public int getViewCalls;
+    public int maxGetViewCallsPerFrame;
+
+    /**
+     * header的translationY和当前页面滑动位置不一致的帧数
+     */
+    public int translationErrors;
+    public int maxTranslationError;
+
+    public int finalTranslationY;
+
+    /**
+     * StickyGridView在这个场景里新创建的占位View个数，滑动过程中应该全部复用
+     */
+    public int placeholderAllocations;
+
+    public ScenarioResult(String name) {
+        this.name = name;
+    }
+
+    public float getViewCallsPerFrame() {
+        return frames == 0 ? 0 : (float) getViewCalls / frames;
+    }
+
+    public float scrollChangedCallsPerFrame() {
+        return frames == 0 ? 0 : (float) scrollChangedCalls / frames;
+    }
+
+    public String toJson() {
+        StringBuilder sb = new StringBuilder();
+        sb.append('{');
+        sb.append("\"name\":\"").append(name).append("\",");
+        sb.append("\"frames\":").append(frames).append(',');
+        sb.append("\"scrollChangedCalls\":").append(scrollChangedCalls).append(',');
+        sb.append("\"scrollChangedCallsPerFrame\":").append(scrollChangedCallsPerFrame()).append(',');
+        sb.append("\"layoutPasses\":").append(layoutPasses).append(',');
+        sb.append("\"maxLayoutPassesPerFrame\":").append(maxLayoutPassesPerFrame).append(',');
+        sb.append("\"getViewCalls\":").append(getViewCalls).append(',');
+        sb.append("\"getViewCallsPerFrame\":").append(getViewCallsPerFrame()).append(',');
+        sb.append("\"maxGetViewCallsPerFrame\":").append(maxGetViewCallsPerFrame).append(',');
+        sb.append("\"translationErrors\":").append(translationErrors).append(',');
+        sb.append("\"maxTranslationError\":").append(maxTranslationError).append(',');
+        sb.append("\"finalTranslationY\":").append(finalTranslationY).append(',');
+        sb.append("\"placeholderAllocations\":").append(placeholderAllocations);
+        sb.append('}');
+        return sb.toString();
+    }
+}
@@ -0,0 +1,180 @@
+package com.hjy.stickyview.harness;
+
+import android.app.Activity;
+
+import com.google.monitoring.runtime.instrumentation.AllocationRecorder;
+import com.google.monitoring.runtime.instrumentation.Sampler;
+import com.hjy.stickyview.BuildConfig;
+import com.hjy.stickyview.HeaderTranslationStrategy;
+import com.hjy.stickyview.StickyCoordinator;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.lang.instrument.Instrumentation;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 在harness里分别对ListView、GridView、ScrollView页面模拟10秒的fling，期间库里的代码(onScroll()、onScrollChanged()、
+ * HeaderViewGridAdapter.getView()、StickyScrollDispatcher、PinnedSectionDrawer等)直接发生的任何内存分配都会失败<br>
+ * 只统计分配位置在com.hjy.stickyview里的分配，framework、Robolectric以及harness自己的分配不在范围内<br>
+ * 需要java-allocation-instrumenter作为javaagent运行，build.gradle里的test任务已经配置
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21, packageName = "com.hjy.stickyview")
+public class ScrollAllocationTest {
+
+    private static final int FLING_FRAMES = (int) (10000 / ScrollSimulationHarness.FRAME_INTERVAL_MS);
+    private static final float FLING_VELOCITY = 8000;
+
+    private final LibrarySampler mSampler = new LibrarySampler();
+
+    /**
+     * 防止检查agent时的分配被优化掉
+     */
+    private long mSink;
+
+    @Test
+    public void listFlingDoesNotAllocate() throws Exception {
+        assertFlingDoesNotAllocate(ScrollSimulationHarness.PAGE_LIST, "list");
+    }
+
+    @Test
+    public void gridFlingDoesNotAllocate() throws Exception {
+        assertFlingDoesNotAllocate(ScrollSimulationHarness.PAGE_GRID, "grid");
+    }
+
+    @Test
+    public void scrollFlingDoesNotAllocate() throws Exception {
+        assertFlingDoesNotAllocate(ScrollSimulationHarness.PAGE_SCROLL, "scroll");
+    }
+
+    private void assertFlingDoesNotAllocate(int page, String name) throws Exception {
+        shareAgentInstrumentation();
+        ScrollSimulationHarness harness = new ScrollSimulationHarness(Robolectric.setupActivity(Activity.class),
+                StickyCoordinator.SYNC_MODE_ALL, new HeaderTranslationStrategy.TranslationY());
+        harness.getCoordinator().setCurrentItem(page, false);
+        harness.frame();
+
+        AllocationRecorder.addSampler(mSampler);
+        try {
+            assertAgentInstalled();
+
+            // 预热，第一次布局、占位View以及类加载允许分配
+            harness.fling(FLING_VELOCITY);
+            harness.fling(-FLING_VELOCITY);
+
+            harness.beginScenario(name + "-allocation");
+            mSampler.start();
+            while (harness.getScenarioFrames() < FLING_FRAMES) {
+                harness.fling(FLING_VELOCITY);
+                harness.fling(-FLING_VELOCITY);
+            }
+            mSampler.stop();
+            harness.endScenario();
+        } finally {
+            mSampler.stop();
+            AllocationRecorder.removeSampler(mSampler);
+        }
+        assertEquals(name + " allocations during fling, first: " + mSampler.mFirstSite, 0, mSampler.mCount);
+    }
+
+    private void assertAgentInstalled() {
+        mSampler.mCountAll = true;
+        mSampler.start();
+        mSink += new int[1].length;
+        mSampler.stop();
+        mSampler.mCountAll = false;
+        assertTrue("java-allocation-instrumenter agent is not installed", mSampler.mCount > 0);
+        mSampler.reset();
+    }
+
+    /**
+     * Robolectric的ClassLoader会自己再加载一份AllocationRecorder，javaagent只初始化了系统ClassLoader里的那一份，
+     * 这里把agent的Instrumentation复制过来，否则这一份不会回调Sampler
+     */
+    private static void shareAgentInstrumentation() throws Exception {
+        Class<?> systemRecorder = ClassLoader.getSystemClassLoader().loadClass(AllocationRecorder.class.getName());
+        if (systemRecorder == AllocationRecorder.class)
+            return;
+        Field source = findInstrumentationField(systemRecorder);
+        Field target = findInstrumentationField(AllocationRecorder.class);
+        if (target.get(null) == null)
+            target.set(null, source.get(null));
+    }
+
+    private static Field findInstrumentationField(Class<?> recorder) {
+        for (Field field : recorder.getDeclaredFields()) {
+            if (Modifier.isStatic(field.getModifiers()) && field.getType() == Instrumentation.class) {
+                field.setAccessible(true);
+                return field;
+            }
+        }
+        throw new IllegalStateException("No Instrumentation field in " + recorder);
+    }
+
+    /**
+     * 只统计当前线程在start()和stop()之间、分配位置在库代码里的分配
+     */
+    private static class LibrarySampler implements Sampler {
+
+        private static final String LIBRARY_PACKAGE = "com.hjy.stickyview.";
+        private static final String HARNESS_PACKAGE = "com.hjy.stickyview.harness.";
+
+        private volatile Thread mRecordingThread;
+        boolean mCountAll;
+        long mCount;
+        String mFirstSite;
+
+        void start() {
+            mRecordingThread = Thread.currentThread();
+        }
+
+        void stop() {
+            mRecordingThread = null;
+        }
+
+        void reset() {
+            mCount = 0;
+            mFirstSite = null;
+        }
+
+        @Override
+        public void sampleAllocation(int count, String desc, Object newObj, long size) {
+            if (Thread.currentThread() != mRecordingThread)
+                return;
+            StackTraceElement site = findAllocationSite();
+            if (!mCountAll && (site == null || !isLibraryClass(site.getClassName())))
+                return;
+            if (mCount == 0)
+                mFirstSite = desc + " at " + site;
+            mCount++;
+        }
+
+        /**
+         * 跳过Sampler和AllocationRecorder自己的栈帧，返回执行分配的位置
+         */
+        private static StackTraceElement findAllocationSite() {
+            StackTraceElement[] stack = new Throwable().getStackTrace();
+            for (StackTraceElement element : stack) {
+                String className = element.getClassName();
+                if (className.startsWith("com.google.monitoring.") || className.equals(LibrarySampler.class.getName()))
+                    continue;
+                return element;
+            }
+            return null;
+        }
+
+        private static boolean isLibraryClass(String className) {
+            return className.startsWith(LIBRARY_PACKAGE) && !className.startsWith(HARNESS_PACKAGE)
+                    && !className.equals(BuildConfig.class.getName());
+        }
+    }
+}
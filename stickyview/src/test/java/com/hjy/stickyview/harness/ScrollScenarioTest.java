@@ -0,0 +1,143 @@
+package com.hjy.stickyview.harness;
+
+import android.app.Activity;
+
+import com.hjy.stickyview.BuildConfig;
+import com.hjy.stickyview.HeaderTranslationStrategy;
+import com.hjy.stickyview.StickyCoordinator;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 运行所有滑动场景，把结果写到build/reports/sticky-scroll/scroll-simulation.json<br>
+ * ./gradlew :stickyview:testDebugUnitTest
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21, packageName = "com.hjy.stickyview")
+public class ScrollScenarioTest {
+
+    private static final String REPORT_DIR = System.getProperty("sticky.report.dir", "build/reports/sticky-scroll");
+
+    @Test
+    public void runScenarios() throws IOException {
+        List<ScenarioResult> results = new ArrayList<ScenarioResult>();
+        int[] syncModes = {StickyCoordinator.SYNC_MODE_ALL, StickyCoordinator.SYNC_MODE_NEIGHBORS};
+        String[] syncModeNames = {"all", "neighbors"};
+        for (int i = 0; i < syncModes.length; i++) {
+            results.add(runDrag(ScrollSimulationHarness.PAGE_LIST, "list-drag", syncModes[i], syncModeNames[i]));
+            results.add(runDrag(ScrollSimulationHarness.PAGE_GRID, "grid-drag", syncModes[i], syncModeNames[i]));
+            results.add(runDrag(ScrollSimulationHarness.PAGE_SCROLL, "scroll-drag", syncModes[i], syncModeNames[i]));
+            results.add(runFling(ScrollSimulationHarness.PAGE_LIST, "list-fling", syncModes[i], syncModeNames[i]));
+            results.add(runFling(ScrollSimulationHarness.PAGE_GRID, "grid-fling", syncModes[i], syncModeNames[i]));
+            results.add(runFling(ScrollSimulationHarness.PAGE_SCROLL, "scroll-fling", syncModes[i], syncModeNames[i]));
+            results.add(runPageSwipes(syncModes[i], syncModeNames[i]));
+        }
+        // 比较header的三种移动方式
+        results.add(runStrategy(new HeaderTranslationStrategy.TranslationY(), "translation-y"));
+        results.add(runStrategy(new HeaderTranslationStrategy.OffsetTopAndBottom(), "offset-top-and-bottom"));
+        results.add(runStrategy(new HeaderTranslationStrategy.LayoutOffset(), "layout-offset"));
+        writeReport(results);
+
+        for (ScenarioResult result : results) {
+            assertEquals(result.name + " header translation", 0, result.translationErrors);
+            assertTrue(result.name + " onScrollChanged per frame", result.scrollChangedCalls <= result.frames);
+            // 第一帧已经创建了header行的占位View，之后滑出再滑回都应该复用
+            assertEquals(result.name + " placeholder allocations", 0, result.placeholderAllocations);
+        }
+    }
+
+    private ScrollSimulationHarness newHarness(int page, int syncMode) {
+        return newHarness(page, syncMode, new HeaderTranslationStrategy.TranslationY());
+    }
+
+    private ScrollSimulationHarness newHarness(int page, int syncMode, HeaderTranslationStrategy strategy) {
+        ScrollSimulationHarness harness = new ScrollSimulationHarness(Robolectric.setupActivity(Activity.class), syncMode, strategy);
+        harness.getCoordinator().setCurrentItem(page, false);
+        harness.frame();
+        return harness;
+    }
+
+    /**
+     * 慢速往上拖过sticky位置，再拖回顶部
+     */
+    private ScenarioResult runDrag(int page, String name, int syncMode, String syncModeName) {
+        ScrollSimulationHarness harness = newHarness(page, syncMode);
+        harness.beginScenario(name + "/" + syncModeName);
+        harness.drag(ScrollSimulationHarness.HEADER_HEIGHT * 2, 60);
+        harness.drag(-ScrollSimulationHarness.HEADER_HEIGHT * 2, 60);
+        return harness.endScenario();
+    }
+
+    /**
+     * 往上fling后再往下fling回顶部
+     */
+    private ScenarioResult runFling(int page, String name, int syncMode, String syncModeName) {
+        ScrollSimulationHarness harness = newHarness(page, syncMode);
+        harness.beginScenario(name + "/" + syncModeName);
+        harness.fling(8000);
+        harness.fling(-8000);
+        return harness.endScenario();
+    }
+
+    /**
+     * 在不同的滑动位置下来回切换三个页面
+     */
+    private ScenarioResult runPageSwipes(int syncMode, String syncModeName) {
+        ScrollSimulationHarness harness = newHarness(ScrollSimulationHarness.PAGE_LIST, syncMode);
+        harness.beginScenario("page-swipe/" + syncModeName);
+        harness.drag(ScrollSimulationHarness.STICKY_VIEW_TOP / 2, 10);
+        harness.swipeToPage(ScrollSimulationHarness.PAGE_GRID, 20);
+        harness.drag(ScrollSimulationHarness.HEADER_HEIGHT * 3, 30);
+        harness.swipeToPage(ScrollSimulationHarness.PAGE_SCROLL, 20);
+        harness.drag(-ScrollSimulationHarness.HEADER_HEIGHT * 6, 30);
+        harness.swipeToPage(ScrollSimulationHarness.PAGE_GRID, 20);
+        harness.swipeToPage(ScrollSimulationHarness.PAGE_LIST, 20);
+        return harness.endScenario();
+    }
+
+    /**
+     * 用不同的header移动方式拖动ListView，主要比较layout的次数
+     */
+    private ScenarioResult runStrategy(HeaderTranslationStrategy strategy, String strategyName) {
+        ScrollSimulationHarness harness = newHarness(ScrollSimulationHarness.PAGE_LIST, StickyCoordinator.SYNC_MODE_ALL, strategy);
+        harness.beginScenario("strategy-drag/" + strategyName);
+        harness.drag(ScrollSimulationHarness.HEADER_HEIGHT * 2, 60);
+        harness.drag(-ScrollSimulationHarness.HEADER_HEIGHT * 2, 60);
+        return harness.endScenario();
+    }
+
+    private void writeReport(List<ScenarioResult> results) throws IOException {
+        File dir = new File(REPORT_DIR);
+        if (!dir.exists() && !dir.mkdirs())
+            throw new IOException("Cannot create " + dir);
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"frameIntervalMs\":").append(ScrollSimulationHarness.FRAME_INTERVAL_MS).append(",\"scenarios\":[");
+        for (int i = 0; i < results.size(); i++) {
+            if (i > 0)
+                sb.append(',');
+            sb.append(results.get(i).toJson());
+        }
+        sb.append("]}");
+        Writer writer = new OutputStreamWriter(new FileOutputStream(new File(dir, "scroll-simulation.json")), "UTF-8");
+        try {
+            writer.write(sb.toString());
+        } finally {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,328 @@
+package com.hjy.stickyview.harness;
+
+import android.app.Activity;
+import android.support.v4.view.ViewPager;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.AbsListView;
+import android.widget.BaseAdapter;
+import android.widget.FrameLayout;
+import android.widget.LinearLayout;
+import android.widget.ScrollView;
+
+import com.hjy.stickyview.HeaderTranslationStrategy;
+import com.hjy.stickyview.IStickyView;
+import com.hjy.stickyview.PlaceholderView;
+import com.hjy.stickyview.StickyCoordinator;
+import com.hjy.stickyview.StickyGridView;
+import com.hjy.stickyview.StickyListView;
+import com.hjy.stickyview.StickyScrollView;
+import com.hjy.stickyview.core.StickyGeometry;
+
+import org.robolectric.shadows.ShadowLooper;
+
+/**
+ * 在Robolectric里模拟一个header + 三个页面(ListView、GridView、ScrollView)的界面，按脚本拖动、fling和切换页面<br>
+ * 主线程Looper处于暂停状态，每一帧依次执行：滑动 -> 需要时measure/layout -> OnPreDraw -> 推进16ms的Looper(Choreographer回调)<br>
+ * fling使用固定的衰减系数逐帧计算滑动距离，保证每次运行的结果一致
+ */
+public class ScrollSimulationHarness {
+
+    public static final long FRAME_INTERVAL_MS = 16;
+
+    public static final int PAGE_LIST = 0;
+    public static final int PAGE_GRID = 1;
+    public static final int PAGE_SCROLL = 2;
+
+    static final int VIEWPORT_WIDTH = 720;
+    static final int VIEWPORT_HEIGHT = 1280;
+    static final int HEADER_HEIGHT = 400;
+    static final int STICKY_VIEW_TOP = 300;
+    static final int ITEM_COUNT = 300;
+    static final int ITEM_HEIGHT = 180;
+    static final int NUM_COLUMNS = 3;
+    static final int SCROLL_CONTENT_HEIGHT = 20000;
+
+    private static final float FLING_DECAY = 0.92f;
+
+    private final FrameLayout mRoot;
+    private final View mHeaderView;
+    private final CountingCoordinator mCoordinator;
+    private final IStickyView[] mPages = new IStickyView[3];
+    private final CountingAdapter[] mAdapters = new CountingAdapter[2];
+
+    private int mLayoutPasses;
+    private int mPlaceholderAllocationsAtBegin;
+
+    private ScenarioResult mResult;
+
+    public ScrollSimulationHarness(Activity activity, int syncMode, HeaderTranslationStrategy strategy) {
+        mRoot = new FrameLayout(activity);
+
+        mHeaderView = new LinearLayout(activity) {
+            @Override
+            protected void onLayout(boolean changed, int l, int t, int r, int b) {
+                mLayoutPasses++;
+                super.onLayout(changed, l, t, r, b);
+            }
+        };
+        mCoordinator = new CountingCoordinator(mHeaderView, HEADER_HEIGHT, STICKY_VIEW_TOP);
+        mCoordinator.setSyncMode(syncMode);
+
+        StickyListView listView = new StickyListView(activity) {
+            @Override
+            protected void onLayout(boolean changed, int l, int t, int r, int b) {
+                mLayoutPasses++;
+                super.onLayout(changed, l, t, r, b);
+            }
+        };
+        mCoordinator.registerPage(PAGE_LIST, listView);
+        listView.setupHeadPlaceHolder(new PlaceholderView(activity));
+        mAdapters[PAGE_LIST] = new CountingAdapter(ITEM_COUNT);
+        listView.setAdapter(mAdapters[PAGE_LIST]);
+        mPages[PAGE_LIST] = listView;
+
+        StickyGridView gridView = new StickyGridView(activity) {
+            @Override
+            protected void onLayout(boolean changed, int l, int t, int r, int b) {
+                mLayoutPasses++;
+                super.onLayout(changed, l, t, r, b);
+            }
+        };
+        gridView.setNumColumns(NUM_COLUMNS);
+        mCoordinator.registerPage(PAGE_GRID, gridView);
+        gridView.setupHeadPlaceHolder(new PlaceholderView(activity));
+        mAdapters[PAGE_GRID] = new CountingAdapter(ITEM_COUNT);
+        gridView.setAdapter(mAdapters[PAGE_GRID]);
+        mPages[PAGE_GRID] = gridView;
+
+        StickyScrollView scrollView = new StickyScrollView(activity) {
+            @Override
+            protected void onLayout(boolean changed, int l, int t, int r, int b) {
+                mLayoutPasses++;
+                super.onLayout(changed, l, t, r, b);
+            }
+        };
+        LinearLayout content = new LinearLayout(activity);
+        content.setOrientation(LinearLayout.VERTICAL);
+        PlaceholderView placeholder = new PlaceholderView(activity);
+        content.addView(placeholder, new LinearLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, 0));
+        content.addView(new View(activity), new LinearLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, SCROLL_CONTENT_HEIGHT));
+        scrollView.addView(content, new ScrollView.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT));
+        mCoordinator.registerPage(PAGE_SCROLL, scrollView);
+        scrollView.setupHeadPlaceHolder(placeholder);
+        mPages[PAGE_SCROLL] = scrollView;
+
+        // 所有页面叠放在一起，都参与布局，相当于ViewPager的offscreenPageLimit足够大
+        for (IStickyView page : mPages) {
+            mRoot.addView((View) page, new FrameLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+        }
+        mRoot.addView(mHeaderView, new FrameLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, HEADER_HEIGHT));
+        activity.setContentView(mRoot);
+        mCoordinator.setTranslationStrategy(strategy);
+
+        ShadowLooper.pauseMainLooper();
+        mCoordinator.setCurrentItem(PAGE_LIST, false);
+        frame();
+    }
+
+    public StickyCoordinator getCoordinator() {
+        return mCoordinator;
+    }
+
+    private StickyGridView getGridView() {
+        return (StickyGridView) mPages[PAGE_GRID];
+    }
+
+    public IStickyView getPage(int position) {
+        return mPages[position];
+    }
+
+    /**
+     * 开始记录一个场景，之前的计数全部清零
+     */
+    public void beginScenario(String name) {
+        mResult = new ScenarioResult(name);
+        mPlaceholderAllocationsAtBegin = getGridView().getPlaceholderAllocationCount();
+    }
+
+    public ScenarioResult endScenario() {
+        ScenarioResult result = mResult;
+        result.finalTranslationY = mCoordinator.getHeaderTranslationY();
+        result.placeholderAllocations = getGridView().getPlaceholderAllocationCount() - mPlaceholderAllocationsAtBegin;
+        mResult = null;
+        return result;
+    }
+
+    /**
+     * @return 当前场景已经模拟的帧数，没有开始场景时返回0
+     */
+    public int getScenarioFrames() {
+        return mResult != null ? mResult.frames : 0;
+    }
+
+    /**
+     * 在frames帧内匀速拖动当前页面，dy大于0时内容往上滑动
+     */
+    public void drag(int dy, int frames) {
+        int done = 0;
+        for (int i = 1; i <= frames; i++) {
+            int target = dy * i / frames;
+            scrollCurrentPageBy(target - done);
+            done = target;
+            frame();
+        }
+    }
+
+    /**
+     * 以velocity(像素/秒)的初速度fling当前页面，直到每帧的滑动距离小于1像素
+     */
+    public void fling(float velocity) {
+        float v = velocity;
+        while (true) {
+            int dy = (int) (v * FRAME_INTERVAL_MS / 1000);
+            if (dy == 0)
+                break;
+            scrollCurrentPageBy(dy);
+            frame();
+            v *= FLING_DECAY;
+        }
+        frame();
+    }
+
+    /**
+     * 按ViewPager的回调顺序，在frames帧内从当前页面切换到相邻的页面
+     */
+    public void swipeToPage(int target, int frames) {
+        int current = mCoordinator.getCurrentItem();
+        if (Math.abs(target - current) != 1)
+            throw new IllegalArgumentException("Can only swipe to an adjacent page");
+        int left = Math.min(current, target);
+        mCoordinator.onPageScrollStateChanged(ViewPager.SCROLL_STATE_DRAGGING);
+        frame();
+        for (int i = 1; i < frames; i++) {
+            float progress = (float) i / frames;
+            float offset = target > current ? progress : 1 - progress;
+            mCoordinator.onPageScrolled(left, offset, (int) (offset * VIEWPORT_WIDTH));
+            if (i == frames / 2) {
+                mCoordinator.onPageScrollStateChanged(ViewPager.SCROLL_STATE_SETTLING);
+                mCoordinator.onPageSelected(target);
+            }
+            frame();
+        }
+        mCoordinator.onPageScrolled(target, 0, 0);
+        mCoordinator.onPageScrollStateChanged(ViewPager.SCROLL_STATE_IDLE);
+        frame();
+    }
+
+    private void scrollCurrentPageBy(int dy) {
+        View page = (View) mPages[mCoordinator.getCurrentItem()];
+        if (page instanceof AbsListView) {
+            ((AbsListView) page).scrollListBy(dy);
+        } else {
+            page.scrollBy(0, dy);
+        }
+    }
+
+    /**
+     * 模拟一帧：需要时measure/layout，然后OnPreDraw，最后推进Looper让Choreographer的回调执行
+     */
+    public void frame() {
+        int layoutPasses = mLayoutPasses;
+        int getViewCalls = getViewCalls();
+        int scrollChangedCalls = mCoordinator.mScrollChangedCalls;
+
+        if (mRoot.isLayoutRequested()) {
+            mRoot.measure(View.MeasureSpec.makeMeasureSpec(VIEWPORT_WIDTH, View.MeasureSpec.EXACTLY),
+                    View.MeasureSpec.makeMeasureSpec(VIEWPORT_HEIGHT, View.MeasureSpec.EXACTLY));
+            mRoot.layout(0, 0, VIEWPORT_WIDTH, VIEWPORT_HEIGHT);
+        }
+        mRoot.getViewTreeObserver().dispatchOnPreDraw();
+        ShadowLooper.idleMainLooper(FRAME_INTERVAL_MS);
+
+        if (mResult == null)
+            return;
+        ScenarioResult result = mResult;
+        result.frames++;
+        int frameLayoutPasses = mLayoutPasses - layoutPasses;
+        result.layoutPasses += frameLayoutPasses;
+        result.maxLayoutPassesPerFrame = Math.max(result.maxLayoutPassesPerFrame, frameLayoutPasses);
+        int frameGetViewCalls = getViewCalls() - getViewCalls;
+        result.getViewCalls += frameGetViewCalls;
+        result.maxGetViewCallsPerFrame = Math.max(result.maxGetViewCallsPerFrame, frameGetViewCalls);
+        result.scrollChangedCalls += mCoordinator.mScrollChangedCalls - scrollChangedCalls;
+
+        int error = Math.abs(getExpectedTranslationY() - mCoordinator.getHeaderTranslationY());
+        if (error != 0) {
+            result.translationErrors++;
+            result.maxTranslationError = Math.max(result.maxTranslationError, error);
+        }
+    }
+
+    /**
+     * 根据当前页面的滑动位置计算header应有的translationY
+     */
+    public int getExpectedTranslationY() {
+        IStickyView page = mPages[mCoordinator.getCurrentItem()];
+        return StickyGeometry.toTranslationY(page.getScrollTop(), STICKY_VIEW_TOP);
+    }
+
+    private int getViewCalls() {
+        int count = 0;
+        for (CountingAdapter adapter : mAdapters) {
+            count += adapter.mGetViewCalls;
+        }
+        return count;
+    }
+
+    private static class CountingCoordinator extends StickyCoordinator {
+
+        int mScrollChangedCalls;
+
+        CountingCoordinator(View headerView, int headerHeight, int stickyViewTop) {
+            super(headerView, headerHeight, stickyViewTop);
+        }
+
+        @Override
+        public void onScrollChanged(int translationY) {
+            mScrollChangedCalls++;
+            super.onScrollChanged(translationY);
+        }
+    }
+
+    private static class CountingAdapter extends BaseAdapter {
+
+        private final int mCount;
+        int mGetViewCalls;
+
+        CountingAdapter(int count) {
+            mCount = count;
+        }
+
+        @Override
+        public int getCount() {
+            return mCount;
+        }
+
+        @Override
+        public Object getItem(int position) {
+            return null;
+        }
+
+        @Override
+        public long getItemId(int position) {
+            return position;
+        }
+
+        @Override
+        public View getView(int position, View convertView, ViewGroup parent) {
+            mGetViewCalls++;
+            View view = convertView;
+            if (view == null) {
+                view = new View(parent.getContext());
+                view.setLayoutParams(new AbsListView.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ITEM_HEIGHT));
+            }
+            return view;
+        }
+    }
+}